@@ -1,9 +1,16 @@
 import Error.Reporter;
+import IR.BinaryIR;
 import IR.TableTree;
 import IR.Translator;
+import Interpreter.Interpreter;
 import Lexer.Lexer;
 import Lexer.Token;
 import MIPS.RobustGenerator;
+import Optimizer.LoopUnrolling;
+import Optimizer.Program;
+import Optimizer.OptLevel;
+import Optimizer.PassManager;
+import Optimizer.Profile;
 import Parser.Node;
 import Parser.Parser;
 
@@ -19,12 +26,51 @@ public class Compiler {
     public static final String tableFilePath = "table.txt";
     public static final String irFilePath = "ir.txt";
     public static final String mipsFilePath = "mips.txt";
+    public static final String profileFilePath = "profile.txt";
 
     public static void main(String[] args) {
+        // 优化等级: -O0 保持原有行为, -O1 中间代码优化与窥孔优化, -O2 额外进行寄存器分配
+        OptLevel level = OptLevel.O0;
+        // -emit-ir=<file> 保存前端生成的二进制中间代码, -load-ir=<file> 跳过前端直接读入
+        String emitPath = null;
+        String loadPath = null;
+        // -interpret 直接解释执行中间代码, 并输出执行次数统计
+        boolean interpret = false;
+        // -profile-gen=<file> 解释执行并保存执行次数反馈, -profile-use=<file> 读入反馈指导优化
+        String profileGenPath = null;
+        String profileUsePath = null;
+        // -unroll=<n> 循环部分展开的倍数, 小于2时不部分展开
+        int unrollFactor = LoopUnrolling.DEFAULT_FACTOR;
+        // -memo 对结果只取决于标量实参的递归函数查表记忆化
+        boolean memoize = false;
+        for (String arg : args) {
+            OptLevel parsed = OptLevel.parse(arg);
+            if (parsed != null) {
+                level = parsed;
+            } else if (arg.startsWith("-emit-ir=")) {
+                emitPath = arg.substring("-emit-ir=".length());
+            } else if (arg.startsWith("-load-ir=")) {
+                loadPath = arg.substring("-load-ir=".length());
+            } else if (arg.startsWith("-profile-gen=")) {
+                profileGenPath = arg.substring("-profile-gen=".length());
+            } else if (arg.startsWith("-profile-use=")) {
+                profileUsePath = arg.substring("-profile-use=".length());
+            } else if (arg.startsWith("-unroll=")) {
+                try {
+                    unrollFactor = Integer.parseInt(arg.substring("-unroll=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("unknown option: " + arg);
+                }
+            } else if (arg.equals("-memo")) {
+                memoize = true;
+            } else if (arg.equals("-interpret")) {
+                interpret = true;
+            } else {
+                System.out.println("unknown option: " + arg);
+            }
+        }
         try {
             // 打开IO
-            FileReader inputFile = new FileReader(inputFilePath);
-            BufferedReader input = new BufferedReader(inputFile);
             FileWriter errorFile = new FileWriter(errorFilePath);
             BufferedWriter error = new BufferedWriter(errorFile);
             FileWriter tableFile = new FileWriter(tableFilePath);
@@ -34,16 +80,22 @@ public class Compiler {
             FileWriter mipsFile = new FileWriter(mipsFilePath);
             BufferedWriter mips = new BufferedWriter(mipsFile);
 
-            // 词法分析
+            Profile profile = profileUsePath == null ? null : Profile.read(profileUsePath);
             Reporter reporter = new Reporter(error);
-            Lexer lexer = new Lexer(input, reporter);
-            ArrayList<Token> tokens = lexer.analyze();
-            input.close();
-            inputFile.close();
+            Node root = null;
+            if (loadPath == null) {
+                // 词法分析
+                FileReader inputFile = new FileReader(inputFilePath);
+                BufferedReader input = new BufferedReader(inputFile);
+                Lexer lexer = new Lexer(input, reporter);
+                ArrayList<Token> tokens = lexer.analyze();
+                input.close();
+                inputFile.close();
 
-            // 语法分析
-            Parser parser = new Parser(tokens, reporter);
-            Node root = parser.parseCompUnit();
+                // 语法分析
+                Parser parser = new Parser(tokens, reporter);
+                root = parser.parseCompUnit();
+            }
             reporter.write();
             error.close();
             errorFile.close();
@@ -51,7 +103,15 @@ public class Compiler {
             // 语义分析与中间代码生成
             if (!reporter.hasError()) {
                 Translator translator = new Translator(root, ir);
-                translator.translate();
+                if (loadPath == null) {
+                    translator.translate();
+                    if (emitPath != null) {
+                        BinaryIR.write(emitPath);
+                    }
+                } else {
+                    BinaryIR.read(loadPath);
+                }
+                new PassManager(level, profile, unrollFactor, memoize).run();
                 TableTree.getInstance().printTableTree(table);
                 translator.write();
             }
@@ -60,10 +120,26 @@ public class Compiler {
             ir.close();
             irFile.close();
 
+            // 解释执行
+            if (!reporter.hasError() && (interpret || profileGenPath != null)) {
+                Interpreter interpreter = new Interpreter(Program.fromTupleList(), System.in, System.out);
+                interpreter.run();
+                if (interpret) {
+                    FileWriter profileFile = new FileWriter(profileFilePath);
+                    BufferedWriter profileWriter = new BufferedWriter(profileFile);
+                    interpreter.writeProfile(profileWriter);
+                    profileWriter.close();
+                    profileFile.close();
+                }
+                if (profileGenPath != null) {
+                    interpreter.getProfile().write(profileGenPath);
+                }
+            }
+
             // MIPS目标代码生成
             if (!reporter.hasError()) {
 //                ObsoleteGenerator generator = new ObsoleteGenerator(mips);
-                RobustGenerator generator = new RobustGenerator(mips);
+                RobustGenerator generator = new RobustGenerator(mips, level, profile);
                 generator.generate();
                 generator.write();
             }
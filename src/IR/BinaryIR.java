@@ -0,0 +1,384 @@
+package IR;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// 中间代码与符号表树的二进制格式, 整数均为varint编码, 字符串统一放在字符串表中
+// 文件结构: magic, version, 字符串表, 计数器, 符号表树, 字符串常量池, tuple序列
+public class BinaryIR {
+    private static final int MAGIC = 0x53594952;  // "SYIR"
+    private static final int VERSION = 2;
+
+    // 操作数的标签, 0表示null
+    private static final int NULL_OPERAND = 0;
+
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+    private byte[] buffer = new byte[1024];
+    private int length = 0;
+
+    private MappedByteBuffer input;
+
+    private BinaryIR() {
+    }
+
+    public static void write(String path) throws IOException {
+        BinaryIR body = new BinaryIR();
+        body.writeBody();
+        BinaryIR header = new BinaryIR();
+        header.writeFixed(MAGIC);
+        header.writeVarint(VERSION);
+        header.writeVarint(body.strings.size());
+        for (String str : body.strings) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            header.writeVarint(bytes.length);
+            header.writeBytes(bytes);
+        }
+        try (FileOutputStream output = new FileOutputStream(path)) {
+            output.write(header.buffer, 0, header.length);
+            output.write(body.buffer, 0, body.length);
+        }
+    }
+
+    public static void read(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            BinaryIR reader = new BinaryIR();
+            reader.input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            reader.readAll();
+        }
+    }
+
+    // ---------------- 写入 ----------------
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeFixed(int value) {
+        for (int i = 3; i >= 0; i--) {
+            writeByte(value >>> (8 * i));
+        }
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    // zigzag编码, 使绝对值小的负数也很短
+    private void writeSigned(int value) {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    private void writeString(String str) {
+        Integer index = stringIndex.get(str);
+        if (index == null) {
+            index = strings.size();
+            strings.add(str);
+            stringIndex.put(str, index);
+        }
+        writeVarint(index);
+    }
+
+    private void writeOperand(Operand operand) {
+        if (operand == null) {
+            writeVarint(NULL_OPERAND);
+            return;
+        }
+        writeVarint(operand.getType().ordinal() + 1);
+        if (operand.getType() == OperandType.CONSTVAL) {
+            writeSigned(operand.getConstVal());
+        } else {
+            writeString(operand.getName());
+        }
+    }
+
+    private void writeOperands(ArrayList<Operand> operands) {
+        writeVarint(operands.size());
+        for (Operand operand : operands) {
+            writeOperand(operand);
+        }
+    }
+
+    // 初值表: 0 含非常数, 1 稠密常数, 2 稀疏常数
+    private void writeInitializer(Initializer initializer) {
+        if (!initializer.isConst()) {
+            writeVarint(0);
+            writeVarint(initializer.size());
+            for (int i = 0; i < initializer.size(); i++) {
+                writeOperand(initializer.getOperand(i));
+            }
+        } else if (!initializer.isSparse()) {
+            writeVarint(1);
+            writeVarint(initializer.size());
+            for (int i = 0; i < initializer.size(); i++) {
+                writeSigned(initializer.getConst(i));
+            }
+        } else {
+            writeVarint(2);
+            writeVarint(initializer.size());
+            int[] indexes = initializer.getIndexes();
+            int[] values = initializer.getValues();
+            writeVarint(indexes.length);
+            int last = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                // 下标递增, 只保存差值
+                writeVarint(indexes[i] - last);
+                writeSigned(values[i]);
+                last = indexes[i];
+            }
+        }
+    }
+
+    private void writeTemplate(Template template) {
+        writeVarint(template.getType().ordinal());
+        writeString(template.getName());
+        writeSigned(template.getLine());
+        switch (template.getType()) {
+            case VAR, CONST:
+                writeOperand(template.getDim1());
+                writeOperand(template.getDim2());
+                writeInitializer(template.getInitVal());
+                writeSigned(template.getOffset());
+                break;
+            case PARAM:
+                writeOperand(template.getDim1());
+                writeOperand(template.getDim2());
+                writeSigned(template.getOffset());
+                break;
+            case FUNC:
+                writeVarint(template.hasRet() ? 1 : 0);
+                writeOperands(template.getParamList());
+                writeVarint(template.getBodyId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeBody() {
+        // 计数器, 保证读入后新生成的临时变量和label不会重名
+        writeVarint(Operand.tempCnt);
+        writeVarint(Operand.labelCntMap.size());
+        for (String label : Operand.labelCntMap.keySet()) {
+            writeString(label);
+            writeVarint(Operand.labelCntMap.get(label));
+        }
+        // 符号表树, 按bfs顺序写入, 保证父表先于子表
+        TableTree tableTree = TableTree.getInstance();
+        ArrayList<SymbolTable> tables = new ArrayList<>();
+        tables.add(tableTree.getTable(0));
+        for (int i = 0; i < tables.size(); i++) {
+            tables.addAll(tables.get(i).getChildren());
+        }
+        writeVarint(tableTree.getSize());
+        writeVarint(tables.size());
+        for (SymbolTable table : tables) {
+            writeVarint(table.getId());
+            writeVarint(table.getParent() == null ? 0 : table.getParent().getId() + 1);
+            writeVarint(table.getSize());
+            writeVarint(table.getContent().size());
+            for (Template template : table.getContent().values()) {
+                writeTemplate(template);
+            }
+        }
+        writeVarint(tableTree.getStringPool().size());
+        for (String str : tableTree.getStringPool()) {
+            writeString(str);
+        }
+        ArrayList<Tuple> tuples = TupleList.getInstance().getTuples();
+        writeVarint(tuples.size());
+        for (Tuple tuple : tuples) {
+            writeVarint(tuple.getOperator().ordinal());
+            writeOperand(tuple.getOperand1());
+            writeOperand(tuple.getOperand2());
+            writeOperand(tuple.getResult());
+            writeVarint(tuple.getBelongTable().getId());
+            writeSigned(tuple.getLine());
+        }
+    }
+
+    // ---------------- 读取 ----------------
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = input.get() & 0xff;
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private int readSigned() {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readString() {
+        return strings.get(readVarint());
+    }
+
+    private Operand readOperand() {
+        int tag = readVarint();
+        if (tag == NULL_OPERAND) {
+            return null;
+        }
+        return switch (OperandType.values()[tag - 1]) {
+            case CONSTVAL -> Operand.getConstOperand(readSigned());
+            case DEF -> Operand.getDefOperand(readString());
+            case TEMP -> Operand.getTempOperand(readString());
+            case LABEL -> Operand.getLabelOperand(readString());
+            case STR -> Operand.getStrOperand(readString());
+        };
+    }
+
+    private ArrayList<Operand> readOperands() {
+        int size = readVarint();
+        ArrayList<Operand> operands = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            operands.add(readOperand());
+        }
+        return operands;
+    }
+
+    private Initializer readInitializer() {
+        int kind = readVarint();
+        int size = readVarint();
+        if (kind == 0) {
+            ArrayList<Operand> operands = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                operands.add(readOperand());
+            }
+            return Initializer.ofOperands(operands);
+        } else if (kind == 1) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = readSigned();
+            }
+            return Initializer.ofDense(values);
+        }
+        int count = readVarint();
+        int[] indexes = new int[count];
+        int[] values = new int[count];
+        int last = 0;
+        for (int i = 0; i < count; i++) {
+            last += readVarint();
+            indexes[i] = last;
+            values[i] = readSigned();
+        }
+        return Initializer.ofSparse(size, indexes, values);
+    }
+
+    private Template readTemplate() {
+        SymbolType type = SymbolType.values()[readVarint()];
+        String name = readString();
+        int line = readSigned();
+        Template template;
+        switch (type) {
+            case VAR, CONST: {
+                Operand dim1 = readOperand();
+                Operand dim2 = readOperand();
+                template = new Template(name, dim1, dim2, type == SymbolType.CONST,
+                        readInitializer(), line);
+                template.setOffset(readSigned());
+                break;
+            }
+            case PARAM: {
+                Operand dim1 = readOperand();
+                Operand dim2 = readOperand();
+                template = new Template(name, dim1, dim2, line);
+                template.setOffset(readSigned());
+                break;
+            }
+            default: {
+                boolean hasRet = readVarint() == 1;
+                template = new Template(name, hasRet, readOperands(), line);
+                template.setBodyId(readVarint());
+                break;
+            }
+        }
+        return template;
+    }
+
+    private void readAll() throws IOException {
+        if (input.getInt() != MAGIC || readVarint() != VERSION) {
+            throw new IOException("not a binary IR file");
+        }
+        int stringCnt = readVarint();
+        for (int i = 0; i < stringCnt; i++) {
+            byte[] bytes = new byte[readVarint()];
+            input.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        Operand.tempCnt = readVarint();
+        Operand.labelCntMap.clear();
+        int labelCnt = readVarint();
+        for (int i = 0; i < labelCnt; i++) {
+            String label = readString();
+            Operand.labelCntMap.put(label, readVarint());
+        }
+        int maxSize = readVarint();
+        int tableCnt = readVarint();
+        HashMap<Integer, SymbolTable> tables = new HashMap<>();
+        for (int i = 0; i < tableCnt; i++) {
+            int id = readVarint();
+            int parentId = readVarint();
+            SymbolTable parent = parentId == 0 ? null : tables.get(parentId - 1);
+            SymbolTable table = new SymbolTable(parent, id, readVarint());
+            if (parent != null) {
+                parent.addChild(table);
+            }
+            tables.put(id, table);
+            int templateCnt = readVarint();
+            for (int j = 0; j < templateCnt; j++) {
+                Template template = readTemplate();
+                template.setBelongTable(table);
+                table.addSymbol(template.getName(), template);
+            }
+        }
+        ArrayList<String> stringPool = new ArrayList<>();
+        int poolSize = readVarint();
+        for (int i = 0; i < poolSize; i++) {
+            stringPool.add(readString());
+        }
+        TableTree.getInstance().restore(tables, stringPool, maxSize);
+        int tupleCnt = readVarint();
+        ArrayList<Tuple> tuples = new ArrayList<>(tupleCnt);
+        for (int i = 0; i < tupleCnt; i++) {
+            Operator operator = Operator.values()[readVarint()];
+            Operand operand1 = readOperand();
+            Operand operand2 = readOperand();
+            Operand result = readOperand();
+            SymbolTable table = tables.get(readVarint());
+            tuples.add(new Tuple(operator, operand1, operand2, result, table, readSigned()));
+        }
+        TupleList.getInstance().setTuples(tuples);
+    }
+}
@@ -0,0 +1,171 @@
+package IR;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// 变量/常量的初值表
+// 全为常数时用int[]稠密保存, 零占多数时只保存非零元素的下标和值; 含有非常数(局部变量的初值表达式)时保存operand
+public class Initializer {
+    private int size;
+    private int[] values;       // 稠密时为全部元素, 稀疏时为非零元素的值
+    private int[] indexes;      // 稀疏时为非零元素的下标, 稠密时为null
+    private ArrayList<Operand> operands;
+
+    public Initializer() {
+        this.size = 0;
+        this.values = new int[4];
+        this.indexes = null;
+        this.operands = null;
+    }
+
+    public static Initializer ofDense(int[] values) {
+        Initializer initializer = new Initializer();
+        initializer.values = values;
+        initializer.size = values.length;
+        return initializer;
+    }
+
+    public static Initializer ofSparse(int size, int[] indexes, int[] values) {
+        Initializer initializer = new Initializer();
+        initializer.size = size;
+        initializer.indexes = indexes;
+        initializer.values = values;
+        return initializer;
+    }
+
+    public static Initializer ofOperands(ArrayList<Operand> operands) {
+        Initializer initializer = new Initializer();
+        for (Operand operand : operands) {
+            initializer.add(operand);
+        }
+        initializer.compact();
+        return initializer;
+    }
+
+    // 依次加入元素, 只能在compact之前调用
+    public void add(Operand operand) {
+        if (operands == null && !operand.isConst()) {
+            operands = new ArrayList<>(Math.max(size + 1, 4));
+            for (int i = 0; i < size; i++) {
+                operands.add(Operand.getConstOperand(values[i]));
+            }
+            values = null;
+        }
+        if (operands != null) {
+            operands.add(operand);
+        } else {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = operand.getConstVal();
+        }
+        size++;
+    }
+
+    // 收缩存储, 非零元素不到一半时改为稀疏存储
+    public void compact() {
+        if (operands != null || indexes != null) {
+            return;
+        }
+        int nonZero = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * 2 < size) {
+            int[] sparseIndexes = new int[nonZero];
+            int[] sparseValues = new int[nonZero];
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != 0) {
+                    sparseIndexes[k] = i;
+                    sparseValues[k++] = values[i];
+                }
+            }
+            indexes = sparseIndexes;
+            values = sparseValues;
+        } else if (values.length != size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // 是否全为常数
+    public boolean isConst() {
+        return operands == null;
+    }
+
+    public boolean isSparse() {
+        return indexes != null;
+    }
+
+    // 稀疏存储时非零元素的下标与值
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    // 含有非常数时的全部operand, 全为常数时为空
+    public ArrayList<Operand> getOperands() {
+        return operands == null ? new ArrayList<>() : operands;
+    }
+
+    public int getConst(int index) {
+        if (operands != null) {
+            return operands.get(index).getConstVal();
+        } else if (indexes == null) {
+            return values[index];
+        }
+        int k = Arrays.binarySearch(indexes, index);
+        return k >= 0 ? values[k] : 0;
+    }
+
+    public Operand getOperand(int index) {
+        if (operands != null) {
+            return operands.get(index);
+        }
+        return Operand.getConstOperand(getConst(index));
+    }
+
+    // 下标不小于from的第一个非零常数元素, 没有则为size
+    public int nextNonZero(int from) {
+        if (indexes != null) {
+            int k = Arrays.binarySearch(indexes, from);
+            k = k >= 0 ? k : -k - 1;
+            return k < indexes.length ? indexes[k] : size;
+        }
+        for (int i = from; i < size; i++) {
+            if (getConst(i) != 0) {
+                return i;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            if (operands != null) {
+                sb.append(operands.get(i));
+            } else {
+                sb.append(getConst(i));
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
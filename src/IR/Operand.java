@@ -55,6 +55,11 @@ public class Operand {
         return new Operand(OperandType.TEMP, -1, "$t" + tempCnt++);
     }
 
+    // 沿用已有的临时变量名
+    public static Operand getTempOperand(String name) {
+        return new Operand(OperandType.TEMP, -1, name);
+    }
+
     public static Operand getLabelOperand(String label) {
         return new Operand(OperandType.LABEL, -1, label);
     }
@@ -27,6 +27,17 @@ public class SymbolTable {
         this.id = cnt++;
     }
 
+    // 从二进制中间代码恢复时沿用原来的id
+    SymbolTable(SymbolTable parent, int id, int size) {
+        this.parent = parent;
+        this.children = new ArrayList<>();
+        this.content = new HashMap<>();
+        this.depth = parent == null ? 0 : parent.getDepth() + 1;
+        this.size = size;
+        this.id = id;
+        cnt = Math.max(cnt, id + 1);
+    }
+
     public int getSize() {
         return size;
     }
@@ -28,6 +28,16 @@ public class TableTree {
         return tableTree;
     }
 
+    // 用二进制中间代码中读出的符号表树替换当前的符号表树
+    void restore(HashMap<Integer, SymbolTable> tables, ArrayList<String> strings, int maxSize) {
+        rootTable = tables.get(0);
+        currentTable = rootTable;
+        id2Table = tables;
+        stringPool = strings;
+        stringCnt = strings.size();
+        size = maxSize;
+    }
+
     public SymbolTable getTable(int id) {
         return id2Table.get(id);
     }
@@ -60,6 +70,18 @@ public class TableTree {
         return null;
     }
 
+    // 按照tuple所在的符号表和行号查找定义, 与ActivationRecord的查找规则一致
+    public Template getTemplate(String name, SymbolTable table, int line) {
+        while (table != null && table.getParent() != null) {
+            Template template = table.getTemplate(name);
+            if (template != null && template.getLine() <= line) {
+                return template;
+            }
+            table = table.getParent();
+        }
+        return rootTable.getTemplate(name);
+    }
+
     public SymbolTable getCurrentTable() {
         return currentTable;
     }
@@ -83,7 +105,7 @@ public class TableTree {
     }
 
     public void addConstDef(String name, Operand dim1, Operand dim2,
-                            ArrayList<Operand> initVal, int line) {
+                            Initializer initVal, int line) {
         Template template = new Template(name, dim1, dim2, true, initVal, line);
         template.setOffset(currentTable.getSize());
         int delta = dim1.getConstVal() == 0 ? 4 :
@@ -97,7 +119,7 @@ public class TableTree {
     }
 
     public void addVarDef(String name, Operand dim1, Operand dim2,
-                          ArrayList<Operand> initVal, int line) {
+                          Initializer initVal, int line) {
         Template template = new Template(name, dim1, dim2, false, initVal, line);
         template.setOffset(currentTable.getSize());
         int delta = dim1.getConstVal() == 0 ? 4 :
@@ -132,6 +154,16 @@ public class TableTree {
         addSymbol(name, template);
     }
 
+    // 优化时新建的符号表(如内联时复制的函数体), 占用size字节
+    public SymbolTable addTable(SymbolTable parent, int size) {
+        SymbolTable table = new SymbolTable(parent);
+        parent.addChild(table);
+        id2Table.put(table.getId(), table);
+        table.addSize(size);
+        this.size += size;
+        return table;
+    }
+
     public void enterBlock() {
         SymbolTable newTable = new SymbolTable(currentTable);
         currentTable.addChild(newTable);
@@ -7,7 +7,7 @@ public class Template {
     private final String name;
     private Operand dim1;   // 必为常数
     private Operand dim2;   // 必为常数
-    private final ArrayList<Operand> initVal;   // 初值表
+    private Initializer initVal;   // 初值表
     private boolean hasRet;    // 是否有返回值
     private final ArrayList<Operand> paramList;  // 参数表
 
@@ -18,12 +18,13 @@ public class Template {
     private int line;   // 变量定义的行号
 
     public Template(String name, Operand dim1, Operand dim2, boolean isConst,
-                    ArrayList<Operand> initVal, int line) {
+                    Initializer initVal, int line) {
         this.type = isConst ? SymbolType.CONST : SymbolType.VAR;
         this.name = name;
         this.dim1 = dim1;
         this.dim2 = dim2;
         this.initVal = initVal;
+        initVal.compact();
         this.paramList = new ArrayList<>();
         this.line = line;
     }
@@ -32,7 +33,7 @@ public class Template {
         this.type = SymbolType.FUNC;
         this.name = name;
         this.hasRet = hasRet;
-        this.initVal = new ArrayList<>();
+        this.initVal = new Initializer();
         this.paramList = paramList;
         this.line = line;
     }
@@ -42,7 +43,7 @@ public class Template {
         this.name = name;
         this.dim1 = dim1;
         this.dim2 = dim2;
-        this.initVal = new ArrayList<>();
+        this.initVal = new Initializer();
         this.paramList = new ArrayList<>();
         this.line = line;
     }
@@ -125,12 +126,16 @@ public class Template {
         return paramList.get(index);
     }
 
-    public ArrayList<Operand> getInitVal() {
+    public Initializer getInitVal() {
         return initVal;
     }
 
+    public void setInitVal(Initializer initVal) {
+        this.initVal = initVal;
+    }
+
     public Operand getInitVal(int index) {
-        return initVal.get(index);
+        return initVal.getOperand(index);
     }
 
     @Override
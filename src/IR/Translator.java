@@ -72,32 +72,31 @@ public class Translator {
         String name = "firetruck";
         int dimCnt = 0;
         Operand[] dims = {Operand.getConstOperand(0), Operand.getConstOperand(0)};
-        ArrayList<Operand> initVal = new ArrayList<>();
+        Initializer initVal = new Initializer();
         for (Node child : node.getChildren()) {
             if (child.is(Symbol.IDENFR)) {
                 name = child.getToken().getRaw();
             } else if (child.is(Term.ConstExp)) {
                 dims[dimCnt++] = translateConstExp(child);
             } else if (child.is(Term.ConstInitVal)) {
-                initVal = translateConstInitVal(child);
+                translateConstInitVal(child, initVal);
             }
         }
         TableTree.getInstance().addConstDef(name, dims[0], dims[1], initVal, node.getLine());
         TupleList.getInstance().addDef(name, node.getLine());
     }
 
-    private ArrayList<Operand> translateConstInitVal(Node node) {
-        ArrayList<Operand> initVal = new ArrayList<>();
+    // 嵌套的初值直接展开到同一个初值表中
+    private void translateConstInitVal(Node node, Initializer initVal) {
         if (node.getFirstChild().is(Term.ConstExp)) {
             initVal.add(translateConstExp(node.getFirstChild()));
         } else {
             for (Node child : node.getChildren()) {
                 if (child.is(Term.ConstInitVal)) {
-                    initVal.addAll(translateConstInitVal(child));
+                    translateConstInitVal(child, initVal);
                 }
             }
         }
-        return initVal;
     }
 
     private void translateVarDecl(Node node) {
@@ -112,30 +111,28 @@ public class Translator {
         String name = "firetruck";
         int dimCnt = 0;
         Operand[] dims = {Operand.getConstOperand(0), Operand.getConstOperand(0)};
-        ArrayList<Operand> initVal = new ArrayList<>();
+        Initializer initVal = new Initializer();
         for (Node child : node.getChildren()) {
             if (child.is(Symbol.IDENFR)) {
                 name = child.getToken().getRaw();
             } else if (child.is(Term.ConstExp)) {
                 dims[dimCnt++] = translateConstExp(child);
             } else if (child.is(Term.InitVal)) {
-                initVal = translateInitVal(child);
+                translateInitVal(child, initVal);
             }
         }
         TableTree.getInstance().addVarDef(name, dims[0], dims[1], initVal, node.getLine());
         TupleList.getInstance().addDef(name, node.getLine());
     }
 
-    private ArrayList<Operand> translateInitVal(Node node) {
-        ArrayList<Operand> initVal = new ArrayList<>();
+    private void translateInitVal(Node node, Initializer initVal) {
         for (Node child : node.getChildren()) {
             if (child.is(Term.Exp)) {
                 initVal.add(translateExp(child));
             } else if (child.is(Term.InitVal)) {
-                initVal.addAll(translateInitVal(child));
+                translateInitVal(child, initVal);
             }
         }
-        return initVal;
     }
 
     private void translateFuncDef(Node node) {
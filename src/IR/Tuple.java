@@ -19,6 +19,17 @@ public class Tuple {
         this.line = line;
     }
 
+    // 优化时生成的tuple需要显式指定所属符号表
+    public Tuple(Operator operator, Operand operand1, Operand operand2,
+                 Operand result, SymbolTable belongTable, int line) {
+        this.operator = operator;
+        this.operand1 = operand1;
+        this.operand2 = operand2;
+        this.result = result;
+        this.belongTable = belongTable;
+        this.line = line;
+    }
+
     public int getLine() {
         return line;
     }
@@ -72,7 +83,7 @@ public class Tuple {
                     str = operand1 + "()";
                 }
                 break;
-            case EQ, NEQ, LT, GT, LEQ, GEQ, ADD, SUB, MUL, DIV, MOD:
+            case EQ, NEQ, LT, GT, LEQ, GEQ, ADD, SUB, MUL, DIV, MOD, AND, OR:
                 str = result + " = " + operand1 + " " + operator + " " + operand2;
                 break;
             case NEG, NOT, POS:
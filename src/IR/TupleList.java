@@ -24,6 +24,10 @@ public class TupleList {
         return tuples;
     }
 
+    public void setTuples(ArrayList<Tuple> tuples) {
+        this.tuples = tuples;
+    }
+
     public void printTuples() {
         for (Tuple tuple : tuples) {
             System.out.println(tuple);
@@ -0,0 +1,366 @@
+package Interpreter;
+
+import IR.Initializer;
+import IR.SymbolType;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+import Optimizer.BasicBlock;
+import Optimizer.FlowGraph;
+import Optimizer.Function;
+import Optimizer.Profile;
+import Optimizer.Program;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+// 直接解释执行四元式, 同时统计每条tuple和每个基本块的执行次数
+public class Interpreter {
+    private final ArrayList<Routine> routines;
+    private final HashMap<String, Integer> routineIndex;
+    private final HashMap<Template, Integer> globals;
+    private final ArrayList<String> strings;
+    private final BufferedReader input;
+    private final PrintStream output;
+    private StringTokenizer tokenizer;
+    private int[] memory;
+    private int dataSize;
+    private long steps;
+
+    public Interpreter(Program program, InputStream in, PrintStream out) {
+        this.routines = new ArrayList<>();
+        this.routineIndex = new HashMap<>();
+        this.globals = new HashMap<>();
+        this.strings = new ArrayList<>();
+        this.input = new BufferedReader(new InputStreamReader(in));
+        this.output = out;
+        this.memory = new int[1 << 16];
+        layoutGlobals();
+        for (Function function : program.getFunctions()) {
+            routineIndex.put(function.getName(), routines.size());
+            routines.add(new Routine(function));
+        }
+        HashMap<String, Integer> stringIndex = new HashMap<>();
+        ArrayList<String> pool = TableTree.getInstance().getStringPool();
+        for (int i = 0; i < pool.size(); i++) {
+            stringIndex.put("#str" + i, i);
+            strings.add(unescape(pool.get(i)));
+        }
+        for (Routine routine : routines) {
+            routine.link(globals, routineIndex, stringIndex);
+        }
+    }
+
+    // 全局变量从地址1开始依次排布, 地址0保留
+    private void layoutGlobals() {
+        dataSize = 1;
+        for (Template template : TableTree.getInstance().getTable(0).getContent().values()) {
+            if (!template.is(SymbolType.VAR) && !template.is(SymbolType.CONST)) {
+                continue;
+            }
+            int size = template.getDimCnt() == 0 ? 1 : (template.getDimCnt() == 1 ?
+                    template.getDim1().getConstVal() :
+                    template.getDim1().getConstVal() * template.getDim2().getConstVal());
+            ensure(dataSize + size);
+            globals.put(template, dataSize);
+            Initializer initVal = template.getInitVal();
+            for (int i = initVal.nextNonZero(0); i < initVal.size(); i = initVal.nextNonZero(i + 1)) {
+                memory[dataSize + i] = initVal.getConst(i);
+            }
+            dataSize += size;
+        }
+    }
+
+    private static String unescape(String str) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                char next = str.charAt(++i);
+                sb.append(switch (next) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    default -> next;
+                });
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void ensure(int size) {
+        if (size > memory.length) {
+            memory = Arrays.copyOf(memory, Math.max(size, memory.length * 2));
+        }
+    }
+
+    private int readInt() throws IOException {
+        while (tokenizer == null || !tokenizer.hasMoreTokens()) {
+            String line = input.readLine();
+            if (line == null) {
+                throw new IOException("unexpected end of input");
+            }
+            tokenizer = new StringTokenizer(line);
+        }
+        return Integer.parseInt(tokenizer.nextToken());
+    }
+
+    private int value(int kind, int val, int fp) {
+        return switch (kind) {
+            case Routine.CONST -> val;
+            case Routine.LOCAL -> memory[fp + val];
+            case Routine.GLOBAL -> memory[val];
+            default -> 0;
+        };
+    }
+
+    private void store(int kind, int val, int fp, int value) {
+        if (kind == Routine.LOCAL || kind == Routine.PARAM_ARRAY) {
+            // 写数组形参即设置它指向的基地址, 内联后由实参赋值
+            memory[fp + val] = value;
+        } else if (kind == Routine.GLOBAL) {
+            memory[val] = value;
+        }
+    }
+
+    // 数组的基地址
+    private int base(int kind, int val, int fp) {
+        return switch (kind) {
+            case Routine.LOCAL_ARRAY -> fp + val;
+            case Routine.GLOBAL_ARRAY -> val;
+            case Routine.PARAM_ARRAY -> memory[fp + val];
+            default -> 0;
+        };
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public void run() throws IOException {
+        Routine routine = routines.get(routineIndex.get("main"));
+        int pc = 0;
+        int fp = dataSize;
+        int sp = fp + routine.getFrameSize();
+        ensure(sp);
+        int[] args = new int[64];
+        int argTop = 0;
+        // 调用栈
+        Routine[] retRoutine = new Routine[64];
+        int[] retPc = new int[64];
+        int[] retFp = new int[64];
+        int depth = 0;
+        boolean running = true;
+        while (running && pc < routine.op.length) {
+            routine.counts[pc]++;
+            steps++;
+            int a = routine.aVal[pc];
+            int b = routine.bVal[pc];
+            int ak = routine.aKind[pc];
+            int bk = routine.bKind[pc];
+            int rk = routine.rKind[pc];
+            int r = routine.rVal[pc];
+            int next = pc + 1;
+            switch (routine.op[pc]) {
+                case DEF: {
+                    int[] init = routine.init[pc];
+                    if (init != null) {
+                        int address = ak == Routine.LOCAL ? fp + a : base(ak, a, fp);
+                        for (int i = 0; i < init.length; i += 2) {
+                            memory[address + i / 2] = value(init[i], init[i + 1], fp);
+                        }
+                    }
+                    break;
+                }
+                case ASSIGN, POS:
+                    store(rk, r, fp, value(ak, a, fp));
+                    break;
+                case NOT:
+                    store(rk, r, fp, value(ak, a, fp) == 0 ? 1 : 0);
+                    break;
+                case NEG:
+                    store(rk, r, fp, -value(ak, a, fp));
+                    break;
+                case ADD:
+                    store(rk, r, fp, value(ak, a, fp) + value(bk, b, fp));
+                    break;
+                case SUB:
+                    store(rk, r, fp, value(ak, a, fp) - value(bk, b, fp));
+                    break;
+                case MUL:
+                    store(rk, r, fp, value(ak, a, fp) * value(bk, b, fp));
+                    break;
+                case DIV:
+                    store(rk, r, fp, value(ak, a, fp) / value(bk, b, fp));
+                    break;
+                case MOD:
+                    store(rk, r, fp, value(ak, a, fp) % value(bk, b, fp));
+                    break;
+                case AND:
+                    store(rk, r, fp, value(ak, a, fp) & value(bk, b, fp));
+                    break;
+                case OR:
+                    store(rk, r, fp, value(ak, a, fp) | value(bk, b, fp));
+                    break;
+                case EQ:
+                    store(rk, r, fp, value(ak, a, fp) == value(bk, b, fp) ? 1 : 0);
+                    break;
+                case NEQ:
+                    store(rk, r, fp, value(ak, a, fp) != value(bk, b, fp) ? 1 : 0);
+                    break;
+                case LT:
+                    store(rk, r, fp, value(ak, a, fp) < value(bk, b, fp) ? 1 : 0);
+                    break;
+                case GT:
+                    store(rk, r, fp, value(ak, a, fp) > value(bk, b, fp) ? 1 : 0);
+                    break;
+                case LEQ:
+                    store(rk, r, fp, value(ak, a, fp) <= value(bk, b, fp) ? 1 : 0);
+                    break;
+                case GEQ:
+                    store(rk, r, fp, value(ak, a, fp) >= value(bk, b, fp) ? 1 : 0);
+                    break;
+                case GOTO:
+                    next = a;
+                    break;
+                case JUMPTRUE:
+                    if (value(ak, a, fp) != 0) {
+                        routine.taken[pc]++;
+                        next = b;
+                    }
+                    break;
+                case JUMPFALSE:
+                    if (value(ak, a, fp) == 0) {
+                        routine.taken[pc]++;
+                        next = b;
+                    }
+                    break;
+                case PUSH:
+                    if (argTop == args.length) {
+                        args = Arrays.copyOf(args, args.length * 2);
+                    }
+                    args[argTop++] = value(ak, a, fp);
+                    break;
+                case CALL: {
+                    Routine callee = routines.get(a);
+                    if (depth == retRoutine.length) {
+                        retRoutine = Arrays.copyOf(retRoutine, depth * 2);
+                        retPc = Arrays.copyOf(retPc, depth * 2);
+                        retFp = Arrays.copyOf(retFp, depth * 2);
+                    }
+                    retRoutine[depth] = routine;
+                    retPc[depth] = pc;
+                    retFp[depth] = fp;
+                    depth++;
+                    fp = sp;
+                    sp = fp + callee.getFrameSize();
+                    ensure(sp);
+                    int paramCnt = callee.paramOffset.length;
+                    argTop -= paramCnt;
+                    for (int i = 0; i < paramCnt; i++) {
+                        memory[fp + callee.paramOffset[i]] = args[argTop + i];
+                    }
+                    routine = callee;
+                    next = 0;
+                    break;
+                }
+                case RETURN: {
+                    int ret = ak == Routine.NONE ? 0 : value(ak, a, fp);
+                    if (depth == 0) {
+                        running = false;
+                        break;
+                    }
+                    sp = fp;
+                    depth--;
+                    routine = retRoutine[depth];
+                    fp = retFp[depth];
+                    int callPc = retPc[depth];
+                    store(routine.rKind[callPc], routine.rVal[callPc], fp, ret);
+                    next = callPc + 1;
+                    break;
+                }
+                case LOAD:
+                    store(rk, r, fp, memory[base(ak, a, fp) + value(bk, b, fp)]);
+                    break;
+                case LOADADDR:
+                    store(rk, r, fp, base(ak, a, fp)
+                            + (bk == Routine.NONE ? 0 : value(bk, b, fp) * routine.scale[pc]));
+                    break;
+                case STORE:
+                    memory[base(ak, a, fp) + value(bk, b, fp)] = value(rk, r, fp);
+                    break;
+                case READ:
+                    store(ak, a, fp, readInt());
+                    break;
+                case PRINT:
+                    if (ak == Routine.STRING) {
+                        output.print(strings.get(a));
+                    } else {
+                        output.print(value(ak, a, fp));
+                    }
+                    break;
+                case EXIT:
+                    running = false;
+                    break;
+                default:
+                    break;
+            }
+            pc = next;
+        }
+        output.flush();
+    }
+
+    // 每条tuple的执行次数
+    public HashMap<Tuple, Long> getTupleCounts() {
+        HashMap<Tuple, Long> counts = new HashMap<>();
+        for (Routine routine : routines) {
+            ArrayList<Tuple> tuples = routine.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                counts.put(tuples.get(i), routine.getCount(i));
+            }
+        }
+        return counts;
+    }
+
+    // 生成执行次数反馈
+    public Profile getProfile() {
+        HashMap<Tuple, Long> counts = getTupleCounts();
+        HashMap<Tuple, Long> taken = new HashMap<>();
+        for (Routine routine : routines) {
+            ArrayList<Tuple> tuples = routine.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                taken.put(tuples.get(i), routine.getTaken(i));
+            }
+        }
+        Profile profile = new Profile();
+        for (Routine routine : routines) {
+            profile.addFunction(routine.getFunction(), counts, taken);
+        }
+        return profile;
+    }
+
+    // 输出带执行次数的中间代码, 每个基本块的执行次数即块首tuple的执行次数
+    public void writeProfile(BufferedWriter file) throws IOException {
+        HashMap<Tuple, Long> counts = getTupleCounts();
+        file.write("total steps: " + steps + "\n");
+        for (Routine routine : routines) {
+            FlowGraph graph = new FlowGraph(routine.getFunction());
+            file.write("\nfunction " + routine.getFunction().getName() + "\n");
+            for (BasicBlock block : graph.getBlocks()) {
+                file.write(block + " count " + counts.get(block.getFirst()) + "\n");
+                for (Tuple tuple : block.getTuples()) {
+                    file.write(String.format("%12d  %s\n", counts.get(tuple), tuple));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package Interpreter;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.SymbolType;
+import IR.Template;
+import IR.Tuple;
+import Optimizer.Function;
+import Optimizer.Var;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// 预先翻译好的函数: 操作数全部解析为(种类, 值)的形式, label解析为tuple下标
+public class Routine {
+    // 操作数种类
+    public static final int NONE = 0;
+    public static final int CONST = 1;     // 常数
+    public static final int LOCAL = 2;     // 栈帧中的标量, 值为帧内偏移
+    public static final int GLOBAL = 3;    // 全局标量, 值为地址
+    public static final int LOCAL_ARRAY = 4;   // 栈帧中的数组, 基地址为fp+偏移
+    public static final int GLOBAL_ARRAY = 5;  // 全局数组, 基地址为值本身
+    public static final int PARAM_ARRAY = 6;   // 数组形参, 基地址保存在帧内偏移处
+    public static final int TARGET = 7;    // 跳转目标, 值为tuple下标
+    public static final int STRING = 8;    // 字符串常量, 值为常量池下标
+    public static final int ROUTINE = 9;   // 被调用的函数, 值为函数下标
+
+    private final Function function;
+    private final ArrayList<Tuple> tuples;
+    private final HashMap<Template, Integer> defOffset;
+    private final HashMap<String, Integer> tempOffset;
+    private int frameSize;
+
+    final Operator[] op;
+    final int[] aKind;
+    final int[] aVal;
+    final int[] bKind;
+    final int[] bVal;
+    final int[] rKind;
+    final int[] rVal;
+    final int[] scale;      // LOADADDR时offset的倍数(二维数组为第二维大小)
+    final int[][] init;     // DEF的初值, 依次为(种类, 值)
+    final long[] counts;    // 每条tuple的执行次数
+    final long[] taken;     // 条件跳转实际跳转的次数
+    int[] paramOffset;
+
+    public Routine(Function function) {
+        this.function = function;
+        this.tuples = function.getTuples();
+        this.defOffset = new HashMap<>();
+        this.tempOffset = new HashMap<>();
+        int size = tuples.size();
+        op = new Operator[size];
+        aKind = new int[size];
+        aVal = new int[size];
+        bKind = new int[size];
+        bVal = new int[size];
+        rKind = new int[size];
+        rVal = new int[size];
+        scale = new int[size];
+        init = new int[size][];
+        counts = new long[size];
+        taken = new long[size];
+        layoutFrame();
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public ArrayList<Tuple> getTuples() {
+        return tuples;
+    }
+
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    public long getTaken(int index) {
+        return taken[index];
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    private static int sizeOf(Template template) {
+        if (template.is(SymbolType.PARAM) || template.getDimCnt() == 0) {
+            return 1;
+        }
+        return template.getDimCnt() == 1 ? template.getDim1().getConstVal() :
+                template.getDim1().getConstVal() * template.getDim2().getConstVal();
+    }
+
+    // 函数体及其子符号表中的变量依次排布, 之后是临时变量
+    private void layoutFrame() {
+        ArrayList<SymbolTable> queue = new ArrayList<>();
+        queue.add(function.getBodyTable());
+        for (int i = 0; i < queue.size(); i++) {
+            SymbolTable table = queue.get(i);
+            for (Template template : table.getContent().values()) {
+                if (!template.is(SymbolType.FUNC)) {
+                    defOffset.put(template, frameSize);
+                    frameSize += sizeOf(template);
+                }
+            }
+            queue.addAll(table.getChildren());
+        }
+        for (Tuple tuple : tuples) {
+            addTemp(tuple.getOperand1());
+            addTemp(tuple.getOperand2());
+            addTemp(tuple.getResult());
+        }
+        Template func = function.getTemplate();
+        ArrayList<Operand> params = func.getParamList();
+        paramOffset = new int[params.size()];
+        for (int i = 0; i < params.size(); i++) {
+            Template param = function.getBodyTable().getTemplate(params.get(i).getName());
+            paramOffset[i] = defOffset.get(param);
+        }
+    }
+
+    private void addTemp(Operand operand) {
+        if (operand != null && operand.getType() == OperandType.TEMP
+                && !tempOffset.containsKey(operand.getName())) {
+            tempOffset.put(operand.getName(), frameSize++);
+        }
+    }
+
+    // 解析操作数, 返回{种类, 值}
+    private int[] resolve(Tuple tuple, Operand operand, HashMap<Template, Integer> globals) {
+        if (operand == null) {
+            return new int[]{NONE, 0};
+        }
+        switch (operand.getType()) {
+            case CONSTVAL:
+                return new int[]{CONST, operand.getConstVal()};
+            case TEMP:
+                return new int[]{LOCAL, tempOffset.get(operand.getName())};
+            case DEF:
+                Var var = Var.of(tuple, operand);
+                Template template = var.getDef();
+                if (template.isGlobal()) {
+                    return new int[]{var.isArray() ? GLOBAL_ARRAY : GLOBAL, globals.get(template)};
+                } else if (var.isArray()) {
+                    return new int[]{var.isParam() ? PARAM_ARRAY : LOCAL_ARRAY,
+                            defOffset.get(template)};
+                }
+                return new int[]{LOCAL, defOffset.get(template)};
+            default:
+                return new int[]{NONE, 0};
+        }
+    }
+
+    // 在所有函数都建立好之后解析操作数
+    void link(HashMap<Template, Integer> globals, HashMap<String, Integer> routineIndex,
+              HashMap<String, Integer> stringIndex) {
+        HashMap<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            if (tuples.get(i).getOperator() == Operator.LABEL) {
+                labels.put(tuples.get(i).getOperand1().getName(), i);
+            }
+        }
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            op[i] = tuple.getOperator();
+            int[] a = {NONE, 0};
+            int[] b = {NONE, 0};
+            int[] r = resolve(tuple, tuple.getResult(), globals);
+            switch (tuple.getOperator()) {
+                case GOTO:
+                    a = new int[]{TARGET, labels.get(tuple.getOperand1().getName())};
+                    break;
+                case JUMPTRUE, JUMPFALSE:
+                    a = resolve(tuple, tuple.getOperand1(), globals);
+                    b = new int[]{TARGET, labels.get(tuple.getOperand2().getName())};
+                    break;
+                case CALL:
+                    a = new int[]{ROUTINE, routineIndex.get(tuple.getOperand1().getName())};
+                    break;
+                case PRINT:
+                    if (tuple.getOperand1().getType() == OperandType.STR) {
+                        // 形如 #str0
+                        a = new int[]{STRING, stringIndex.get(tuple.getOperand1().getName())};
+                    } else {
+                        a = resolve(tuple, tuple.getOperand1(), globals);
+                    }
+                    break;
+                case PUSH:
+                    a = resolve(tuple, tuple.getOperand1(), globals);
+                    r = new int[]{NONE, 0};
+                    break;
+                case DEF:
+                    a = resolve(tuple, tuple.getOperand1(), globals);
+                    Var var = Var.of(tuple, tuple.getOperand1());
+                    if (!var.isGlobal()) {
+                        Initializer initVal = var.getDef().getInitVal();
+                        int[] values = new int[initVal.size() * 2];
+                        for (int j = 0; j < initVal.size(); j++) {
+                            int[] value = initVal.isConst() ? new int[]{CONST, initVal.getConst(j)} :
+                                    resolve(tuple, initVal.getOperand(j), globals);
+                            values[2 * j] = value[0];
+                            values[2 * j + 1] = value[1];
+                        }
+                        init[i] = values;
+                    }
+                    break;
+                case LOADADDR:
+                    a = resolve(tuple, tuple.getOperand1(), globals);
+                    b = resolve(tuple, tuple.getOperand2(), globals);
+                    Template array = Var.of(tuple, tuple.getOperand1()).getDef();
+                    scale[i] = array.getDimCnt() == 2 ? array.getDim2().getConstVal() : 1;
+                    break;
+                default:
+                    a = resolve(tuple, tuple.getOperand1(), globals);
+                    b = resolve(tuple, tuple.getOperand2(), globals);
+                    break;
+            }
+            aKind[i] = a[0];
+            aVal[i] = a[1];
+            bKind[i] = b[0];
+            bVal[i] = b[1];
+            rKind[i] = r[0];
+            rVal[i] = r[1];
+        }
+    }
+}
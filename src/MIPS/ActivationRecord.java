@@ -113,6 +113,11 @@ public class ActivationRecord {
         return -114514;
     }
 
+    // 具名变量相对于$fp的偏移
+    public int getOffset(Template template) {
+        return def.get(template.getBelongTable().getId() + template.getName());
+    }
+
     public int getReserveSize() {
         return reserveSize;
     }
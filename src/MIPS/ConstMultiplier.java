@@ -0,0 +1,54 @@
+package MIPS;
+
+import java.util.ArrayList;
+
+// 乘以常数c的移位加减分解: 把c写成非相邻形式 (NAF) sum(±2^k), 非零项最少
+// 每项需要一条sll (k = 0 时不需要), 项之间需要addu/subu, 第一项为负时还要从$zero减
+public class ConstMultiplier {
+    // mul指令本身的代价, 另加上li常数的代价
+    private static final int MUL_COST = 3;
+    // 每一项为 {k, 符号}, 按k从大到小排列, 有正项时正项排在最前
+    private final ArrayList<int[]> terms;
+
+    public ConstMultiplier(int c) {
+        this.terms = new ArrayList<>();
+        long value = c;
+        for (int k = 0; value != 0; k++) {
+            if ((value & 1) != 0) {
+                // value % 4 == 1 取 +1, == 3 取 -1, 使下一位为0
+                int digit = (value & 3) == 1 ? 1 : -1;
+                terms.add(0, new int[]{k, digit});
+                value -= digit;
+            }
+            value >>= 1;
+        }
+        for (int i = 0; i < terms.size(); i++) {
+            if (terms.get(i)[1] > 0) {
+                terms.add(0, terms.remove(i));
+                break;
+            }
+        }
+    }
+
+    public ArrayList<int[]> getTerms() {
+        return terms;
+    }
+
+    // 移位加减序列的指令数
+    public int getCost() {
+        int cost = terms.size() - 1;
+        for (int[] term : terms) {
+            cost += term[0] > 0 ? 1 : 0;
+        }
+        if (!terms.isEmpty() && terms.get(0)[1] < 0) {
+            cost++;
+        }
+        return cost;
+    }
+
+    // 比 li 加 mul 更便宜时使用移位加减
+    public boolean isCheaper(int c) {
+        int liCost = c >= -32768 && c <= 65535 ? 1 : 2;
+        return getCost() < liCost + MUL_COST;
+    }
+}
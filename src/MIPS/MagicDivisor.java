@@ -0,0 +1,51 @@
+package MIPS;
+
+// 有符号除以常数d (|d| >= 2 且不是2的幂) 时的魔数与移位量, 按 Granlund-Montgomery 的方法计算:
+// q = mulhi(n, multiplier), d > 0 且 multiplier < 0 时再加 n, d < 0 且 multiplier > 0 时再减 n,
+// 然后算术右移 shift 位, 最后商为负时加 1 使其向零取整
+public class MagicDivisor {
+    private static final long MASK = 0xffffffffL;
+    private static final long TWO31 = 0x80000000L;
+    private final int multiplier;
+    private final int shift;
+
+    public MagicDivisor(int d) {
+        long ad = Math.abs((long) d);
+        long t = TWO31 + ((d & MASK) >>> 31);
+        // |nc|: 满足 nc % d == d - 1 的最大可表示被除数
+        long anc = t - 1 - t % ad;
+        int p = 31;
+        long q1 = TWO31 / anc;
+        long r1 = TWO31 - q1 * anc;
+        long q2 = TWO31 / ad;
+        long r2 = TWO31 - q2 * ad;
+        long delta;
+        do {
+            p++;
+            q1 = (2 * q1) & MASK;
+            r1 = (2 * r1) & MASK;
+            if (r1 >= anc) {
+                q1 = (q1 + 1) & MASK;
+                r1 = (r1 - anc) & MASK;
+            }
+            q2 = (2 * q2) & MASK;
+            r2 = (2 * r2) & MASK;
+            if (r2 >= ad) {
+                q2 = (q2 + 1) & MASK;
+                r2 = (r2 - ad) & MASK;
+            }
+            delta = ad - r2;
+        } while (q1 < delta || q1 == delta && r1 == 0);
+        int magic = (int) (q2 + 1);
+        this.multiplier = d < 0 ? -magic : magic;
+        this.shift = p - 32;
+    }
+
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    public int getShift() {
+        return shift;
+    }
+}
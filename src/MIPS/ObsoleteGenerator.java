@@ -1,5 +1,6 @@
 package MIPS;
 
+import IR.Initializer;
 import IR.Operand;
 import IR.OperandType;
 import IR.SymbolTable;
@@ -169,7 +170,7 @@ public class ObsoleteGenerator {
             if (template.is(SymbolType.VAR) || template.is(SymbolType.CONST)) {
                 String name = template.getName();
                 StringBuilder code = new StringBuilder(name + ": .word ");
-                ArrayList<Operand> initVal = template.getInitVal();
+                Initializer initVal = template.getInitVal();
                 if (initVal.isEmpty()) {
                     int size = template.getDim1().getConstVal() == 0 ? 1 :
                             (template.getDim2().getConstVal() == 0 ?
@@ -178,7 +179,7 @@ public class ObsoleteGenerator {
                     code.append("0 : ").append(size);
                 } else {
                     for (int i = 0; i < initVal.size(); i++) {
-                        code.append(initVal.get(i).getConstVal());
+                        code.append(initVal.getConst(i));
                         if (i != initVal.size() - 1) {
                             code.append(", ");
                         }
@@ -345,9 +346,9 @@ public class ObsoleteGenerator {
         Template template = TableTree.getInstance().getTemplate(var.getName());
         if ((template.is(SymbolType.VAR) || template.is(SymbolType.CONST))
                 && !template.isGlobal()) {
-            ArrayList<Operand> initVal = template.getInitVal();
+            Initializer initVal = template.getInitVal();
             for (int i = 0; i < initVal.size(); i++) {
-                Operand operand = initVal.get(i);
+                Operand operand = initVal.getOperand(i);
                 mipsCode.add(generalCode(
                         "move", "$t0", getReg(operand, true)));
                 int offset = table2Offset.get(template.getBelongTable())
@@ -0,0 +1,111 @@
+package MIPS;
+
+import java.util.ArrayList;
+
+// 对生成的mips代码做窥孔优化
+public class Peephole {
+    private final ArrayList<String> code;
+
+    public Peephole(ArrayList<String> code) {
+        this.code = new ArrayList<>(code);
+    }
+
+    public ArrayList<String> run() {
+        boolean changed = true;
+        while (changed) {
+            changed = removeSelfMove();
+            changed |= removeJumpToNext();
+            changed |= forwardStore();
+        }
+        return code;
+    }
+
+    private static boolean isComment(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.startsWith("#");
+    }
+
+    private static boolean isLabel(String line) {
+        return !isComment(line) && line.trim().endsWith(":");
+    }
+
+    private static String getOp(String line) {
+        String trimmed = line.trim();
+        int index = trimmed.indexOf(' ');
+        return index < 0 ? trimmed : trimmed.substring(0, index);
+    }
+
+    private static String[] getArgs(String line) {
+        String trimmed = line.trim();
+        int index = trimmed.indexOf(' ');
+        if (index < 0) {
+            return new String[0];
+        }
+        return trimmed.substring(index + 1).trim().split(", ");
+    }
+
+    // 下一条不是注释的代码
+    private int next(int index) {
+        index++;
+        while (index < code.size() && isComment(code.get(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    // move $x, $x
+    private boolean removeSelfMove() {
+        return code.removeIf(line -> {
+            if (isComment(line) || isLabel(line) || !getOp(line).equals("move")) {
+                return false;
+            }
+            String[] args = getArgs(line);
+            return args.length == 2 && args[0].equals(args[1]);
+        });
+    }
+
+    // j L 之后紧接着就是 L:
+    private boolean removeJumpToNext() {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            String line = code.get(i);
+            if (isComment(line) || isLabel(line) || !getOp(line).equals("j")) {
+                continue;
+            }
+            String target = getArgs(line)[0] + ":";
+            int j = next(i);
+            while (j < code.size() && isLabel(code.get(j))) {
+                if (code.get(j).trim().equals(target)) {
+                    code.remove(i);
+                    i--;
+                    changed = true;
+                    break;
+                }
+                j = next(j);
+            }
+        }
+        return changed;
+    }
+
+    // sw $x, addr 之后紧接着 lw $y, addr, 改为寄存器之间的移动
+    private boolean forwardStore() {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            String line = code.get(i);
+            if (isComment(line) || isLabel(line) || !getOp(line).equals("sw")) {
+                continue;
+            }
+            int j = next(i);
+            if (j >= code.size() || isLabel(code.get(j)) || !getOp(code.get(j)).equals("lw")) {
+                continue;
+            }
+            String[] store = getArgs(line);
+            String[] load = getArgs(code.get(j));
+            if (store.length == 2 && load.length == 2 && store[1].equals(load[1])) {
+                code.set(j, CodePool.getInstance().code("move", load[0], store[0]));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
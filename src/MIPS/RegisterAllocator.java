@@ -0,0 +1,185 @@
+package MIPS;
+
+import IR.Operator;
+import IR.Tuple;
+import Optimizer.BasicBlock;
+import Optimizer.DefUse;
+import Optimizer.FlowGraph;
+import Optimizer.Function;
+import Optimizer.Liveness;
+import Optimizer.Profile;
+import Optimizer.Var;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+// 基于活跃区间的线性扫描寄存器分配, 只分配非全局的标量
+public class RegisterAllocator {
+    // $t1~$t4 是临时寄存器, $s0 $s2 $v0 $a0 $k0 $k1 另有用途, $s5 $s6 在调用时会被恢复
+    private static final String[] REGS = {
+            "$t0", "$t5", "$t6", "$t7", "$t8", "$t9", "$s1", "$s3",
+            "$s4", "$s7", "$a1", "$a2", "$a3", "$v1",
+    };
+    private final HashMap<Var, String> regMap;
+    private final HashMap<Tuple, ArrayList<Var>> callSaves;
+    private final ArrayList<Var> entryLoads;
+    private final HashMap<Var, int[]> intervals;
+    // 有执行次数反馈时, 变量的访问次数作为溢出代价
+    private final HashMap<Var, Long> weights;
+
+    public RegisterAllocator(Function function, Profile profile) {
+        this.regMap = new HashMap<>();
+        this.callSaves = new HashMap<>();
+        this.entryLoads = new ArrayList<>();
+        this.intervals = new HashMap<>();
+        this.weights = new HashMap<>();
+        FlowGraph graph = new FlowGraph(function);
+        Liveness liveness = new Liveness(graph);
+        buildIntervals(graph, liveness);
+        if (profile != null && profile.getEntryCount(function) > 0) {
+            buildWeights(function, graph, profile);
+        }
+        linearScan();
+        for (Var var : liveness.getLiveIn(graph.getEntry())) {
+            if (var.isParam() && regMap.containsKey(var)) {
+                entryLoads.add(var);
+            }
+        }
+        for (Tuple call : callSaves.keySet()) {
+            callSaves.get(call).removeIf(var -> !regMap.containsKey(var));
+        }
+    }
+
+    private void extend(Var var, int pos) {
+        int[] interval = intervals.get(var);
+        if (interval == null) {
+            intervals.put(var, new int[]{pos, pos});
+        } else {
+            interval[0] = Math.min(interval[0], pos);
+            interval[1] = Math.max(interval[1], pos);
+        }
+    }
+
+    private void buildIntervals(FlowGraph graph, Liveness liveness) {
+        int base = 0;
+        for (BasicBlock block : graph.getBlocks()) {
+            ArrayList<Tuple> tuples = block.getTuples();
+            HashSet<Var> live = new HashSet<>(liveness.getLiveOut(block));
+            for (int i = tuples.size() - 1; i >= 0; i--) {
+                Tuple tuple = tuples.get(i);
+                int pos = base + i;
+                for (Var var : live) {
+                    extend(var, pos);
+                }
+                Var def = DefUse.getDef(tuple);
+                if (tuple.getOperator() == Operator.CALL) {
+                    ArrayList<Var> across = new ArrayList<>(live);
+                    across.remove(def);
+                    callSaves.put(tuple, across);
+                }
+                if (def != null && def.isLocalScalar()) {
+                    extend(def, pos);
+                }
+                for (Var var : DefUse.getUses(tuple)) {
+                    if (var.isLocalScalar()) {
+                        extend(var, pos);
+                    }
+                }
+                Liveness.step(tuple, live);
+            }
+            base += tuples.size();
+        }
+    }
+
+    private void buildWeights(Function function, FlowGraph graph, Profile profile) {
+        for (BasicBlock block : graph.getBlocks()) {
+            long count = Math.max(0, profile.getBlockCount(function, block));
+            for (Tuple tuple : block.getTuples()) {
+                Var def = DefUse.getDef(tuple);
+                if (def != null && intervals.containsKey(def)) {
+                    weights.merge(def, count, Long::sum);
+                }
+                for (Var var : DefUse.getUses(tuple)) {
+                    if (intervals.containsKey(var)) {
+                        weights.merge(var, count, Long::sum);
+                    }
+                }
+            }
+        }
+    }
+
+    // 溢出other比溢出spill更好: 有反馈时比较访问次数, 否则比较区间结束位置
+    private boolean betterSpill(Var other, Var spill) {
+        if (!weights.isEmpty()) {
+            long x = weights.getOrDefault(other, 0L);
+            long y = weights.getOrDefault(spill, 0L);
+            if (x != y) {
+                return x < y;
+            }
+        }
+        return intervals.get(other)[1] > intervals.get(spill)[1];
+    }
+
+    private void linearScan() {
+        ArrayList<Var> order = new ArrayList<>(intervals.keySet());
+        order.sort((a, b) -> {
+            int[] x = intervals.get(a);
+            int[] y = intervals.get(b);
+            if (x[0] != y[0]) {
+                return Integer.compare(x[0], y[0]);
+            } else if (x[1] != y[1]) {
+                return Integer.compare(x[1], y[1]);
+            }
+            return a.toString().compareTo(b.toString());
+        });
+        ArrayList<Var> active = new ArrayList<>();
+        ArrayList<String> free = new ArrayList<>(List.of(REGS));
+        for (Var var : order) {
+            int start = intervals.get(var)[0];
+            // 释放已经结束的区间
+            for (int i = active.size() - 1; i >= 0; i--) {
+                if (intervals.get(active.get(i))[1] < start) {
+                    free.add(0, regMap.get(active.remove(i)));
+                }
+            }
+            if (!free.isEmpty()) {
+                regMap.put(var, free.remove(0));
+                active.add(var);
+                continue;
+            }
+            // 溢出代价最小的区间, 默认为结束最晚的区间
+            Var spill = var;
+            for (Var other : active) {
+                if (betterSpill(other, spill)) {
+                    spill = other;
+                }
+            }
+            if (spill != var) {
+                regMap.put(var, regMap.remove(spill));
+                active.remove(spill);
+                active.add(var);
+            }
+        }
+    }
+
+    public String getReg(Var var) {
+        return var == null ? null : regMap.get(var);
+    }
+
+    // 分配给变量的寄存器, 即函数本身会写入的寄存器
+    public HashSet<String> getUsedRegs() {
+        return new HashSet<>(regMap.values());
+    }
+
+    // 跨越调用仍然活跃, 需要在调用前后保存的变量
+    public ArrayList<Var> getCallSaves(Tuple call) {
+        return callSaves.getOrDefault(call, new ArrayList<>());
+    }
+
+    // 函数入口处需要从栈中读入寄存器的参数
+    public ArrayList<Var> getEntryLoads() {
+        return entryLoads;
+    }
+}
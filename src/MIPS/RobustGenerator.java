@@ -1,18 +1,27 @@
 package MIPS;
 
+import IR.Initializer;
 import IR.Operand;
 import IR.OperandType;
+import IR.Operator;
 import IR.SymbolTable;
 import IR.SymbolType;
 import IR.TableTree;
 import IR.Template;
 import IR.Tuple;
 import IR.TupleList;
+import Optimizer.Function;
+import Optimizer.OptLevel;
+import Optimizer.Profile;
+import Optimizer.Program;
+import Optimizer.TailRecursion;
+import Optimizer.Var;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 public class RobustGenerator {
     private final ArrayList<String> mipsCode;
@@ -29,9 +38,25 @@ public class RobustGenerator {
     // 指定一个缓冲区专门用来传递函数参数
     private final String BUFFER = String.valueOf(
             0x7fffeffc - 4 * 8192);
+    // 全局数组中连续的零达到该长度时单独用 0 : n 表示
+    private final int ZERO_RUN = 16;
+    // 局部数组的常数初值达到该长度时用循环初始化, 否则逐个sw
+    private final int INIT_LOOP_SIZE = 16;
+    // 用循环初始化时, 不短于该长度的非零段从.data中的模板复制
+    private final int COPY_RUN = 4;
+    private final HashMap<Template, ArrayList<String>> initBlocks;
     private int currentTuple;
+    private final OptLevel level;
+    private final Profile profile;
+    // 每个函数的寄存器分配结果, 以函数的PUSHAR为键
+    private final HashMap<Tuple, RegisterAllocator> allocators;
+    private RegisterAllocator allocator;
+    // 可以复用当前AR的尾调用
+    private final HashSet<Tuple> tailCalls;
+    // 每个函数及其调用的函数会写入的分配寄存器
+    private final HashMap<String, HashSet<String>> clobbers;
 
-    public RobustGenerator(BufferedWriter output) {
+    public RobustGenerator(BufferedWriter output, OptLevel level, Profile profile) {
         mipsCode = new ArrayList<>();
         codePool = CodePool.getInstance();
         this.output = output;
@@ -40,6 +65,13 @@ public class RobustGenerator {
         arMap = new HashMap<>();
         currentAR = null;
         labelCnt = 0;
+        this.level = level;
+        this.profile = profile;
+        allocators = new HashMap<>();
+        allocator = null;
+        initBlocks = new HashMap<>();
+        tailCalls = new HashSet<>();
+        clobbers = new HashMap<>();
     }
 
     private int getCurrentLine() {
@@ -47,8 +79,61 @@ public class RobustGenerator {
     }
 
     public void generate() {
+        if (level.useRegAlloc()) {
+            Program program = Program.fromTupleList();
+            for (Function function : program.getFunctions()) {
+                allocators.put(function.getTuples().get(1), new RegisterAllocator(function, profile));
+            }
+            findClobbers(program);
+        }
+        if (level.usePeephole()) {
+            for (Function function : Program.fromTupleList().getFunctions()) {
+                findTailCalls(function);
+            }
+        }
         generateDataPart();
         generateTextPart();
+        if (level.usePeephole()) {
+            ArrayList<String> optimized = new Peephole(mipsCode).run();
+            mipsCode.clear();
+            mipsCode.addAll(optimized);
+        }
+    }
+
+    // 操作数被分配到的寄存器, 没有则为null
+    private String getAllocatedReg(Operand operand) {
+        if (allocator == null || operand == null) {
+            return null;
+        }
+        return allocator.getReg(Var.of(TupleList.getInstance().getTuple(currentTuple), operand));
+    }
+
+    private boolean isScratch(String reg) {
+        return reg.equals("$t1") || reg.equals("$t2") || reg.equals("$t3") || reg.equals("$t4");
+    }
+
+    // 读取操作数的值所在的寄存器
+    private String useReg(Operand operand) {
+        String reg = getAllocatedReg(operand);
+        return reg != null ? reg : allocateReg(operand, true);
+    }
+
+    // 存放运算结果的寄存器: 目标已分配寄存器则直接写入, 否则尽量复用源操作数的临时寄存器
+    private String resultReg(Operand target, String source) {
+        String reg = getAllocatedReg(target);
+        if (reg != null) {
+            return reg;
+        }
+        return isScratch(source) ? source : allocateReg();
+    }
+
+    // 变量在栈中的位置
+    private String homeAddr(Var var) {
+        if (var.isTemp()) {
+            return -currentAR.getOffset(var.getTemp(), currentTable.getId(), getCurrentLine())
+                    + "($sp)";
+        }
+        return -currentAR.getOffset(var.getDef()) + "($fp)";
     }
 
     private String allocateReg() {
@@ -111,6 +196,11 @@ public class RobustGenerator {
 
     // offset only used for local def
     private void saveReg(Operand target, String source, int offset) {
+        String reg = getAllocatedReg(target);
+        if (reg != null) {
+            mipsCode.add(codePool.code("move", reg, source));
+            return;
+        }
         OperandType type = target.getType();
         String name = target.getName();
         switch (type) {
@@ -145,35 +235,106 @@ public class RobustGenerator {
         }
         if ((var.is(SymbolType.VAR) || var.is(SymbolType.CONST))
                 && !var.isGlobal()) {
-            ArrayList<Operand> initVal = var.getInitVal();
+            Initializer initVal = var.getInitVal();
+            if (initBlocks.containsKey(var)) {
+                convertLoopInit(var, initVal);
+                return;
+            }
+            String reg = getAllocatedReg(varOP);
             for (int i = 0; i < initVal.size(); i++) {
-                Operand init = initVal.get(i);
-                mipsCode.add(codePool.code("move", "$s0", allocateReg(init, true)));
-                saveReg(varOP, "$s0", i);
+                Operand init = initVal.getOperand(i);
+                if (reg != null) {
+                    loadInto(reg, init);
+                } else {
+                    // 初值中的临时变量可能已分配在寄存器中
+                    String initReg = getAllocatedReg(init);
+                    mipsCode.add(codePool.code("move", "$s0",
+                            initReg != null ? initReg : allocateReg(init, true)));
+                    saveReg(varOP, "$s0", i);
+                }
+            }
+        }
+    }
+
+    // 较大的局部数组: 零段用循环清零, 较长的非零段用循环从.data中的模板复制, 其余逐个sw
+    private void convertLoopInit(Template var, Initializer initVal) {
+        int base = currentAR.getOffset(var.getName(), currentTable.getId(), getCurrentLine());
+        ArrayList<String> blocks = initBlocks.get(var);
+        int blockCnt = 0;
+        for (int[] run : splitRuns(initVal)) {
+            int length = run[1] - run[0];
+            int start = base + run[0] * 4;
+            if (run[2] == 0 && length < COPY_RUN) {
+                for (int i = run[0]; i < run[1]; i++) {
+                    int value = initVal.getConst(i);
+                    String reg = "$zero";
+                    if (value != 0) {
+                        reg = "$t1";
+                        mipsCode.add(codePool.code("li", reg, "" + value));
+                    }
+                    mipsCode.add(codePool.code("sw", reg, -(base + i * 4) + "($fp)"));
+                }
+                continue;
             }
+            // 数组向低地址增长, 用$t2指向当前元素, $t3为结束位置
+            mipsCode.add(codePool.code("subu", "$t2", "$fp", "" + start));
+            mipsCode.add(codePool.code("subu", "$t3", "$fp", "" + (start + length * 4)));
+            if (run[2] == 0) {
+                mipsCode.add(codePool.code("la", "$t1", blocks.get(blockCnt++)));
+            }
+            mipsCode.add("_init_" + labelCnt + ": ");
+            if (run[2] == 0) {
+                mipsCode.add(codePool.code("lw", "$t4", "0($t1)"));
+                mipsCode.add(codePool.code("addiu", "$t1", "$t1", "4"));
+                mipsCode.add(codePool.code("sw", "$t4", "0($t2)"));
+            } else {
+                mipsCode.add(codePool.code("sw", "$zero", "0($t2)"));
+            }
+            mipsCode.add(codePool.code("addiu", "$t2", "$t2", "-4"));
+            mipsCode.add(codePool.code("bne", "$t2", "$t3", "_init_" + labelCnt));
+            labelCnt++;
+        }
+    }
+
+    // 将操作数的值放入指定寄存器
+    private void loadInto(String reg, Operand source) {
+        String sourceReg = getAllocatedReg(source);
+        if (sourceReg != null) {
+            mipsCode.add(codePool.code("move", reg, sourceReg));
+        } else if (source.getType() == OperandType.CONSTVAL) {
+            mipsCode.add(codePool.code("li", reg, "" + source.getConstVal()));
+        } else {
+            mipsCode.add(codePool.code("move", reg, allocateReg(source, true)));
         }
     }
 
     private void convertASSIGN(Tuple tuple) {
         Operand target = tuple.getResult();
         Operand source = tuple.getOperand1();
-        saveReg(target, allocateReg(source, true));
+        String reg = getAllocatedReg(target);
+        if (reg != null) {
+            loadInto(reg, source);
+        } else {
+            saveReg(target, useReg(source));
+        }
     }
 
     private void convertNOT(Tuple tuple) {
         Operand target = tuple.getResult();
         Operand source = tuple.getOperand1();
-        String temp = allocateReg(source, true);
-        mipsCode.add(codePool.code("seq", temp, "$zero", temp));
-        saveReg(target, temp);
+        String temp = useReg(source);
+        String result = resultReg(target, temp);
+        mipsCode.add(codePool.code("seq", result, "$zero", temp));
+        saveReg(target, result);
     }
 
     private void convertNEG(Tuple tuple) {
         Operand target = tuple.getResult();
         Operand source = tuple.getOperand1();
-        String temp = allocateReg(source, true);
-        mipsCode.add(codePool.code("negu", temp, temp));
-        saveReg(target, temp);
+        String temp = useReg(source);
+        String result = resultReg(target, temp);
+        mipsCode.add(codePool.code("negu", result, temp));
+        saveReg(target, result);
     }
 
     private void convertPOS(Tuple tuple) {
@@ -184,10 +345,11 @@ public class RobustGenerator {
         Operand target = tuple.getResult();
         Operand source1 = tuple.getOperand1();
         Operand source2 = tuple.getOperand2();
-        String temp1 = allocateReg(source1, true);
-        String temp2 = allocateReg(source2, true);
-        mipsCode.add(codePool.code(op, temp1, temp1, temp2));
-        saveReg(target, temp1);
+        String temp1 = useReg(source1);
+        String temp2 = useReg(source2);
+        String result = resultReg(target, temp1);
+        mipsCode.add(codePool.code(op, result, temp1, temp2));
+        saveReg(target, result);
     }
 
     private void convertADD(Tuple tuple) {
@@ -199,15 +361,143 @@ public class RobustGenerator {
     }
 
     private void convertMUL(Tuple tuple) {
-        convertCal(tuple, "mul");
+        Operand source1 = tuple.getOperand1();
+        Operand source2 = tuple.getOperand2();
+        if (!level.usePeephole() || source1.getType() != OperandType.CONSTVAL
+                && source2.getType() != OperandType.CONSTVAL) {
+            convertCal(tuple, "mul");
+            return;
+        }
+        boolean constFirst = source2.getType() != OperandType.CONSTVAL;
+        Operand target = tuple.getResult();
+        String n = useReg(constFirst ? source2 : source1);
+        String temp = allocateReg();
+        String result = resultReg(target, n);
+        mulConst(result, n, (constFirst ? source1 : source2).getConstVal(), "$s0", temp);
+        saveReg(target, result);
+    }
+
+    // dest = source * c: 比 li 加 mul 便宜时用sll与addu/subu, 中间结果放在acc与temp中
+    // acc与temp不能是source, dest可以是source
+    private void mulConst(String dest, String source, int c, String acc, String temp) {
+        ConstMultiplier multiplier = new ConstMultiplier(c);
+        if (c == 0) {
+            mipsCode.add(codePool.code("move", dest, "$zero"));
+            return;
+        } else if (!multiplier.isCheaper(c)) {
+            mipsCode.add(codePool.code("li", temp, "" + c));
+            mipsCode.add(codePool.code("mul", dest, source, temp));
+            return;
+        }
+        ArrayList<int[]> terms = multiplier.getTerms();
+        String sum = "$zero";
+        for (int i = 0; i < terms.size(); i++) {
+            int shift = terms.get(i)[0];
+            boolean add = terms.get(i)[1] > 0;
+            boolean last = i == terms.size() - 1;
+            String term = source;
+            if (shift > 0) {
+                // 只有一项且为正时直接移位到dest
+                term = last && i == 0 && add ? dest : (i == 0 ? acc : temp);
+                mipsCode.add(codePool.code("sll", term, source, "" + shift));
+            }
+            if (i == 0 && add) {
+                sum = term;
+                if (last && !term.equals(dest)) {
+                    mipsCode.add(codePool.code("move", dest, term));
+                }
+                continue;
+            }
+            String to = last ? dest : acc;
+            mipsCode.add(codePool.code(add ? "addu" : "subu", to, sum, term));
+            sum = to;
+        }
     }
 
     private void convertDIV(Tuple tuple) {
-        convertCal(tuple, "div");
+        if (isConstDivisor(tuple)) {
+            convertConstDiv(tuple, false);
+        } else {
+            convertCal(tuple, "div");
+        }
     }
 
     private void convertMOD(Tuple tuple) {
-        convertCal(tuple, "rem");
+        if (isConstDivisor(tuple)) {
+            convertConstDiv(tuple, true);
+        } else {
+            convertCal(tuple, "rem");
+        }
+    }
+
+    private boolean isConstDivisor(Tuple tuple) {
+        return level.usePeephole() && tuple.getOperand2().getType() == OperandType.CONSTVAL
+                && tuple.getOperand2().getConstVal() != 0;
+    }
+
+    // 除以非零常数d: 2的幂用移位, 负数先加上 |d| - 1 使商向零取整; 其余用魔数乘法取高32位
+    // 商在$s0中求出, 取模为 n - q * d
+    private void convertConstDiv(Tuple tuple, boolean mod) {
+        Operand target = tuple.getResult();
+        int d = tuple.getOperand2().getConstVal();
+        String n = useReg(tuple.getOperand1());
+        long abs = Math.abs((long) d);
+        if (abs == 1) {
+            String result = mod ? "$zero" : resultReg(target, n);
+            if (!mod) {
+                mipsCode.add(codePool.code(d > 0 ? "move" : "negu", result, n));
+            }
+            saveReg(target, result);
+            return;
+        }
+        int k = Long.numberOfTrailingZeros(abs);
+        boolean power = abs == 1L << k;
+        String result;
+        if (power) {
+            if (k == 1) {
+                mipsCode.add(codePool.code("srl", "$s0", n, "31"));
+            } else {
+                mipsCode.add(codePool.code("sra", "$s0", n, "" + (k - 1)));
+                mipsCode.add(codePool.code("srl", "$s0", "$s0", "" + (32 - k)));
+            }
+            mipsCode.add(codePool.code("addu", "$s0", "$s0", n));
+            result = resultReg(target, n);
+            if (mod) {
+                // 清除低k位即得 q * |d|, 余数与被除数同号
+                mipsCode.add(codePool.code("sra", "$s0", "$s0", "" + k));
+                mipsCode.add(codePool.code("sll", "$s0", "$s0", "" + k));
+                mipsCode.add(codePool.code("subu", result, n, "$s0"));
+            } else if (d > 0) {
+                mipsCode.add(codePool.code("sra", result, "$s0", "" + k));
+            } else {
+                mipsCode.add(codePool.code("sra", "$s0", "$s0", "" + k));
+                mipsCode.add(codePool.code("negu", result, "$s0"));
+            }
+        } else {
+            MagicDivisor magic = new MagicDivisor(d);
+            mipsCode.add(codePool.code("li", "$s0", "" + magic.getMultiplier()));
+            mipsCode.add(codePool.code("mult", n, "$s0"));
+            mipsCode.add(codePool.code("mfhi", "$s0"));
+            if (d > 0 && magic.getMultiplier() < 0) {
+                mipsCode.add(codePool.code("addu", "$s0", "$s0", n));
+            } else if (d < 0 && magic.getMultiplier() > 0) {
+                mipsCode.add(codePool.code("subu", "$s0", "$s0", n));
+            }
+            if (magic.getShift() > 0) {
+                mipsCode.add(codePool.code("sra", "$s0", "$s0", "" + magic.getShift()));
+            }
+            String sign = allocateReg();
+            mipsCode.add(codePool.code("srl", sign, "$s0", "31"));
+            result = resultReg(target, n);
+            if (mod) {
+                mipsCode.add(codePool.code("addu", "$s0", "$s0", sign));
+                mulConst("$s0", "$s0", d, sign, allocateReg());
+                mipsCode.add(codePool.code("subu", result, n, "$s0"));
+            } else {
+                mipsCode.add(codePool.code("addu", result, "$s0", sign));
+            }
+        }
+        saveReg(target, result);
     }
 
     private void convertAND(Tuple tuple) {
@@ -243,10 +533,89 @@ public class RobustGenerator {
     }
 
     // function call
+    // 调用时只需保存被调函数会写入的寄存器中的变量, 递归时按调用图迭代到不再变化
+    private void findClobbers(Program program) {
+        for (Function function : program.getFunctions()) {
+            clobbers.put(function.getName(), allocators.get(function.getTuples().get(1)).getUsedRegs());
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Function function : program.getFunctions()) {
+                HashSet<String> regs = clobbers.get(function.getName());
+                for (Tuple tuple : function.getTuples()) {
+                    if (tuple.getOperator() == Operator.CALL) {
+                        HashSet<String> callee = clobbers.get(tuple.getOperand1().getName());
+                        changed |= callee != null && regs.addAll(callee);
+                    }
+                }
+            }
+        }
+    }
+
+    // 调用后直接返回其结果的CALL; 函数取过局部数组的地址时, 被调函数可能访问当前AR, 不能复用
+    private void findTailCalls(Function function) {
+        if (function.isMain()) {
+            return;
+        }
+        ArrayList<Tuple> tuples = function.getTuples();
+        for (Tuple tuple : tuples) {
+            if (tuple.getOperator() == Operator.LOADADDR) {
+                Template array = TableTree.getInstance().getTemplate(
+                        tuple.getOperand1().getName(), tuple.getBelongTable(), tuple.getLine());
+                if (!array.isGlobal() && !array.is(SymbolType.PARAM)) {
+                    return;
+                }
+            }
+        }
+        HashMap<String, Integer> labels = TailRecursion.labelIndex(tuples);
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            if (tuple.getOperator() == Operator.CALL
+                    && TailRecursion.isTail(tuples, labels, i + 1, tuple.getResult())) {
+                tailCalls.add(tuple);
+            }
+        }
+    }
+
+    // 尾调用: 被调函数的AR与当前AR位置相同, 参数直接写入当前AR,
+    // 恢复上一个AR后跳转, 被调函数返回时直接回到当前函数的调用者
+    private void convertTailCall(Tuple tuple) {
+        mipsCode.add("# tail call");
+        String funcName = tuple.getOperand1().getName();
+        Template func = TableTree.getInstance().getTable(0).getContent().get(funcName);
+        ArrayList<Operand> paramList = func.getParamList();
+        for (int i = 0; i < paramList.size(); i++) {
+            int oldOffset = 4 * (paramList.size() - i);
+            int newOffset = currentAR.getReserveSize() + 4 * i;
+            mipsCode.add(codePool.code("lw", "$s0", oldOffset + "($k1)"));
+            mipsCode.add(codePool.code("sw", "$s0", -newOffset + "($fp)"));
+        }
+        mipsCode.add(codePool.code("addu", "$k1", "$k1", "" + 4 * paramList.size()));
+        // 被调函数按$s2从上一个AR的$fp下移, 回到当前AR的位置
+        mipsCode.add(codePool.code("lw", "$s0", "0($fp)"));
+        mipsCode.add(codePool.code("subu", "$s2", "$s0", "$fp"));
+        mipsCode.add(codePool.code("move", "$fp", "$s0"));
+        mipsCode.add(codePool.code("j", funcName + "_BEGIN"));
+    }
+
     private void convertCALL(Tuple tuple) {
+        if (tailCalls.contains(tuple)) {
+            convertTailCall(tuple);
+            return;
+        }
         // 保存现场
         mipsCode.add("# save regs");
         mipsCode.addAll(codePool.saveRegs(currentAR.getTempSize()));
+        ArrayList<Var> saves = allocator == null ? new ArrayList<>() : allocator.getCallSaves(tuple);
+        HashSet<String> clobbered = clobbers.get(tuple.getOperand1().getName());
+        if (clobbered != null) {
+            saves = new ArrayList<>(saves);
+            saves.removeIf(var -> !clobbered.contains(allocator.getReg(var)));
+        }
+        for (Var var : saves) {
+            mipsCode.add(codePool.code("sw", allocator.getReg(var), homeAddr(var)));
+        }
         // 将BUFFER中参数复制到新的AR中
         mipsCode.add("# copy params");
         String funcName = tuple.getOperand1().getName();
@@ -268,12 +637,19 @@ public class RobustGenerator {
         mipsCode.add(codePool.code("jal", funcName + "_BEGIN"));
         // 弹出AR
         convertPopAR(tuple);
+        for (Var var : saves) {
+            mipsCode.add(codePool.code("lw", allocator.getReg(var), homeAddr(var)));
+        }
         // 函数返回值
         if (tuple.getResult() != null) {
             String resultReg = allocateReg(tuple.getResult(), false);
             mipsCode.add("# get return value");
-            mipsCode.add(codePool.code("move", resultReg, "$v0"));
-            saveReg(tuple.getResult(), resultReg);
+            if (getAllocatedReg(tuple.getResult()) != null) {
+                saveReg(tuple.getResult(), "$v0");
+            } else {
+                mipsCode.add(codePool.code("move", resultReg, "$v0"));
+                saveReg(tuple.getResult(), resultReg);
+            }
         }
         // 恢复现场
         mipsCode.add("# restore regs");
@@ -283,7 +659,7 @@ public class RobustGenerator {
     private void convertRETURN(Tuple tuple) {
         Operand returnVal = tuple.getOperand1();
         if (returnVal != null) {
-            mipsCode.add(codePool.code("move", "$v0", allocateReg(returnVal, true)));
+            mipsCode.add(codePool.code("move", "$v0", useReg(returnVal)));
         }
         mipsCode.add(codePool.code("jr", "$ra"));
     }
@@ -298,20 +674,22 @@ public class RobustGenerator {
         mipsCode.add(codePool.code("j", label.getName()));
     }
 
-    // WARNING: this should be never used
+    // 只会由优化产生
     private void convertJUMPTRUE(Tuple tuple) {
-        System.out.println("WARNING: JUMPTRUE should be never used");
+        Operand cond = tuple.getOperand1();
+        Operand label = tuple.getOperand2();
+        mipsCode.add(codePool.code("bne", useReg(cond), "$zero", label.getName()));
     }
 
     private void convertJUMPFALSE(Tuple tuple) {
         Operand cond = tuple.getOperand1();
         Operand label = tuple.getOperand2();
-        mipsCode.add(codePool.code("beq", allocateReg(cond, true), "$zero", label.getName()));
+        mipsCode.add(codePool.code("beq", useReg(cond), "$zero", label.getName()));
     }
 
     private void convertPUSH(Tuple tuple) {
         Operand paramOp = tuple.getOperand1();
-        String param = allocateReg(paramOp, true);
+        String param = useReg(paramOp);
         mipsCode.add(codePool.code("sw", param, "($k1)"));
         mipsCode.add(codePool.code("subu", "$k1", "$k1", "4"));
     }
@@ -325,7 +703,7 @@ public class RobustGenerator {
             if (def.isGlobal()) {
                 mipsCode.add(codePool.code("la", addrReg, base.getName()));
             } else if (def.is(SymbolType.PARAM)) {
-                mipsCode.add(codePool.code("move", addrReg, allocateReg(base, true)));
+                mipsCode.add(codePool.code("move", addrReg, useReg(base)));
             } else {
                 mipsCode.add(codePool.code(
                         "subu", addrReg, "$fp",
@@ -333,8 +711,9 @@ public class RobustGenerator {
                                 getCurrentLine())));
             }
         } else {
-            addrReg = allocateReg(offset, true);
-            mipsCode.add(codePool.code("sll", addrReg, addrReg, "2"));
+            String offsetReg = useReg(offset);
+            addrReg = isScratch(offsetReg) ? offsetReg : allocateReg();
+            mipsCode.add(codePool.code("sll", addrReg, offsetReg, "2"));
             if (def.getDimCnt() == 2 && isLoadAddr) {
                 mipsCode.add(codePool.code("mul",
                         addrReg, addrReg, allocateReg(def.getDim2(), true)));
@@ -344,7 +723,7 @@ public class RobustGenerator {
             } else if (def.is(SymbolType.PARAM)) {
                 // 检查param的地址(baseReg)在栈段还是数据段, 两者的增长方向相反
                 mipsCode.add("\t# check param addr");
-                String baseReg = allocateReg(base, true);
+                String baseReg = useReg(base);
                 mipsCode.add(codePool.code("bgt", baseReg, STACKLIMIT, "_stack_" + labelCnt));
                 mipsCode.add("_data_" + labelCnt + ": ");
                 mipsCode.add(codePool.code("addu", addrReg, baseReg, addrReg));
@@ -369,7 +748,7 @@ public class RobustGenerator {
         Operand offset = tuple.getOperand2();
         Operand target = tuple.getResult();
         String offsetReg = calculateAddrReg(base, offset, false);
-        String targetReg = allocateReg(target, false);
+        String targetReg = resultReg(target, allocateReg());
         mipsCode.add(codePool.code("lw", targetReg, "(" + offsetReg + ")"));
         saveReg(target, targetReg);
     }
@@ -379,7 +758,7 @@ public class RobustGenerator {
         Operand offset = tuple.getOperand2();
         Operand target = tuple.getResult();
         String addrReg = calculateAddrReg(base, offset, true);
-        String targetReg = allocateReg(target, false);
+        String targetReg = resultReg(target, allocateReg());
         mipsCode.add(codePool.code("move", targetReg, addrReg));
         saveReg(target, targetReg);
     }
@@ -389,7 +768,7 @@ public class RobustGenerator {
         Operand offset = tuple.getOperand2();
         Operand source = tuple.getResult();
         String offsetReg = calculateAddrReg(base, offset, false);
-        mipsCode.add(codePool.code("sw", allocateReg(source, true), "(" + offsetReg + ")"));
+        mipsCode.add(codePool.code("sw", useReg(source), "(" + offsetReg + ")"));
     }
 
     private void convertREAD(Tuple tuple) {
@@ -400,7 +779,7 @@ public class RobustGenerator {
 
     private void convertPRINT(Tuple tuple) {
         Operand source = tuple.getOperand1();
-        String sourceReg = allocateReg(source, true);
+        String sourceReg = useReg(source);
         mipsCode.add(codePool.code("move", "$a0", sourceReg));
         switch (source.getType()) {
             case CONSTVAL, TEMP, DEF:
@@ -422,6 +801,12 @@ public class RobustGenerator {
     private void convertPushAR(Tuple tuple) {
         SymbolTable table = tuple.getBelongTable();
         allocateAR(table, currentTuple);
+        allocator = allocators.get(tuple);
+        if (allocator != null) {
+            for (Var param : allocator.getEntryLoads()) {
+                mipsCode.add(codePool.code("lw", allocator.getReg(param), homeAddr(param)));
+            }
+        }
     }
 
     private void convertPopAR(Tuple tuple) {
@@ -438,31 +823,106 @@ public class RobustGenerator {
         for (Template template : rootTable.getContent().values()) {
             if (template.is(SymbolType.VAR) || template.is(SymbolType.CONST)) {
                 String name = template.getName();
-                StringBuilder code = new StringBuilder(name + ": .word ");
-                ArrayList<Operand> initVal = template.getInitVal();
+                Initializer initVal = template.getInitVal();
                 if (initVal.isEmpty()) {
                     int size = template.getDim1().getConstVal() == 0 ? 1 :
                             (template.getDim2().getConstVal() == 0 ?
                                     template.getDim1().getConstVal() :
                                     template.getDim1().getConstVal() * template.getDim2().getConstVal());
-                    code.append("0 : ").append(size);
+                    mipsCode.add(name + ": .word 0 : " + size);
+                } else if (level.usePeephole()) {
+                    generateWords(name + ": ", initVal);
                 } else {
-                    for (int i = 0; i < initVal.size(); i++) {
-                        code.append(initVal.get(i).getConstVal());
-                        if (i != initVal.size() - 1) {
-                            code.append(", ");
-                        }
-                    }
+                    // -O0 时保持原有的完整列表
+                    mipsCode.add(name + ": .word " + joinWords(initVal, 0, initVal.size()));
                 }
-                mipsCode.add(code.toString());
             }
         }
+        // -O0 时保持逐个sw的初始化
+        if (level.usePeephole()) {
+            generateInitBlocks();
+        }
         for (int i = 0; i < TableTree.getInstance().getStringPool().size(); i++) {
             String str = TableTree.getInstance().getStringPool().get(i);
             mipsCode.add("str" + i + ": .asciiz \"" + str + "\"");
         }
     }
 
+    // 把常数初值表划分为连续段, 每段为{起点, 终点(不含), 是否为零段}, 零段不短于ZERO_RUN
+    private ArrayList<int[]> splitRuns(Initializer initVal) {
+        ArrayList<int[]> runs = new ArrayList<>();
+        int i = 0;
+        while (i < initVal.size()) {
+            int next = initVal.nextNonZero(i);
+            if (next - i >= ZERO_RUN) {
+                runs.add(new int[]{i, next, 1});
+                i = next;
+                continue;
+            }
+            int j = i;
+            while (j < initVal.size()) {
+                next = initVal.nextNonZero(j);
+                if (next - j >= ZERO_RUN) {
+                    break;
+                }
+                j = Math.min(next + 1, initVal.size());
+            }
+            runs.add(new int[]{i, j, 0});
+            i = j;
+        }
+        return runs;
+    }
+
+    // 按初值表生成.word, 较长的连续零段用 0 : n 表示
+    private void generateWords(String label, Initializer initVal) {
+        String prefix = label;
+        for (int[] run : splitRuns(initVal)) {
+            if (run[2] == 1) {
+                mipsCode.add(prefix + ".word 0 : " + (run[1] - run[0]));
+            } else {
+                mipsCode.add(prefix + ".word " + joinWords(initVal, run[0], run[1]));
+            }
+            prefix = "";
+        }
+    }
+
+    private String joinWords(Initializer initVal, int start, int end) {
+        StringBuilder code = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            if (i != start) {
+                code.append(", ");
+            }
+            code.append(initVal.getConst(i));
+        }
+        return code.toString();
+    }
+
+    // 为用循环初始化的局部数组生成初值模板
+    private void generateInitBlocks() {
+        ArrayList<SymbolTable> queue = new ArrayList<>(TableTree.getInstance().getTable(0).getChildren());
+        for (int i = 0; i < queue.size(); i++) {
+            SymbolTable table = queue.get(i);
+            queue.addAll(table.getChildren());
+            for (Template template : table.getContent().values()) {
+                if ((!template.is(SymbolType.VAR) && !template.is(SymbolType.CONST))
+                        || template.getDimCnt() == 0 || !template.getInitVal().isConst()
+                        || template.getInitVal().size() < INIT_LOOP_SIZE) {
+                    continue;
+                }
+                Initializer initVal = template.getInitVal();
+                ArrayList<String> blocks = new ArrayList<>();
+                for (int[] run : splitRuns(initVal)) {
+                    if (run[2] == 0 && run[1] - run[0] >= COPY_RUN) {
+                        String label = "_initdata_" + table.getId() + "_" + template.getName() + "_" + blocks.size();
+                        mipsCode.add(label + ": .word " + joinWords(initVal, run[0], run[1]));
+                        blocks.add(label);
+                    }
+                }
+                initBlocks.put(template, blocks);
+            }
+        }
+    }
+
     // 生成代码段
     private void generateTextPart() {
         mipsCode.add(".text");
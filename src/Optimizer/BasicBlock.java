@@ -0,0 +1,81 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+
+public class BasicBlock {
+    private final int id;
+    private final ArrayList<Tuple> tuples;
+    private final ArrayList<BasicBlock> preds;
+    private final ArrayList<BasicBlock> succs;
+
+    public BasicBlock(int id) {
+        this.id = id;
+        this.tuples = new ArrayList<>();
+        this.preds = new ArrayList<>();
+        this.succs = new ArrayList<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public ArrayList<Tuple> getTuples() {
+        return tuples;
+    }
+
+    public ArrayList<BasicBlock> getPreds() {
+        return preds;
+    }
+
+    public ArrayList<BasicBlock> getSuccs() {
+        return succs;
+    }
+
+    public void addSucc(BasicBlock succ) {
+        if (!succs.contains(succ)) {
+            succs.add(succ);
+            succ.preds.add(this);
+        }
+    }
+
+    public Tuple getFirst() {
+        return tuples.get(0);
+    }
+
+    public Tuple getLast() {
+        return tuples.get(tuples.size() - 1);
+    }
+
+    public boolean isEmpty() {
+        return tuples.isEmpty();
+    }
+
+    // 块首label的名字, 没有则为null
+    public String getLabel() {
+        if (!tuples.isEmpty() && getFirst().getOperator() == Operator.LABEL) {
+            return getFirst().getOperand1().getName();
+        }
+        return null;
+    }
+
+    // 块首的label, 没有则以prefix为前缀新建一个
+    public Operand labelOf(String prefix) {
+        Tuple first = getFirst();
+        if (first.getOperator() == Operator.LABEL) {
+            return first.getOperand1();
+        }
+        Operand label = Operand.getAutoLabelOperand(prefix);
+        tuples.add(0, new Tuple(Operator.LABEL, label, null, null,
+                first.getBelongTable(), first.getLine()));
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id + (getLabel() == null ? "" : "(" + getLabel() + ")");
+    }
+}
@@ -0,0 +1,125 @@
+package Optimizer;
+
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// 根据执行次数反馈重排基本块, 让最常走的后继紧跟在后面
+// 只负责补上被打断的顺序执行所需的goto, 之后由BranchCleanup翻转条件跳转并删除多余的跳转
+public class BlockLayout extends FunctionPass {
+    private final Profile profile;
+
+    public BlockLayout(Profile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public String getName() {
+        return "block-layout";
+    }
+
+    // 顺序执行时的后继
+    private static BasicBlock fallThrough(ArrayList<BasicBlock> blocks, int index) {
+        if (DefUse.isTerminator(blocks.get(index).getLast()) || index + 1 >= blocks.size()) {
+            return null;
+        }
+        return blocks.get(index + 1);
+    }
+
+    // 边的执行次数
+    private long edgeCount(Function function, FlowGraph graph, BasicBlock from, BasicBlock to,
+                           HashMap<BasicBlock, Long> freq) {
+        Tuple last = from.getLast();
+        if (DefUse.isBranch(last)) {
+            long[] count = profile.getBranchCount(function, last);
+            BasicBlock target = graph.getBlock(DefUse.getTarget(last));
+            if (count != null) {
+                if (target == to) {
+                    return count[0];
+                }
+                return count[1] - count[0];
+            }
+            return Math.min(freq.get(from), freq.get(to));
+        }
+        return freq.get(from);
+    }
+
+    @Override
+    public boolean run(Function function) {
+        if (profile.getEntryCount(function) <= 0) {
+            return false;
+        }
+        FlowGraph graph = new FlowGraph(function);
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        if (blocks.size() <= 2) {
+            return false;
+        }
+        HashMap<BasicBlock, Long> freq = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            freq.put(block, Math.max(0, profile.getBlockCount(function, block)));
+        }
+        // 入口块与最后一个块(函数结尾的label)位置不变
+        BasicBlock exit = blocks.get(blocks.size() - 1);
+        ArrayList<BasicBlock> layout = new ArrayList<>();
+        boolean[] placed = new boolean[blocks.size()];
+        placed[exit.getId()] = true;
+        BasicBlock current = graph.getEntry();
+        while (current != null) {
+            layout.add(current);
+            placed[current.getId()] = true;
+            BasicBlock best = null;
+            long bestCount = 0;
+            for (BasicBlock succ : current.getSuccs()) {
+                long count = edgeCount(function, graph, current, succ, freq);
+                if (!placed[succ.getId()] && (count > bestCount
+                        || count == bestCount && best != null && succ.getId() < best.getId())) {
+                    best = succ;
+                    bestCount = count;
+                }
+            }
+            if (best == null) {
+                for (BasicBlock block : blocks) {
+                    if (!placed[block.getId()]) {
+                        best = block;
+                        break;
+                    }
+                }
+            }
+            current = best;
+        }
+        layout.add(exit);
+        boolean changed = false;
+        for (int i = 0; i < layout.size(); i++) {
+            changed |= layout.get(i) != blocks.get(i);
+        }
+        if (!changed) {
+            return false;
+        }
+        // 顺序后继不再紧跟时补上goto
+        HashMap<BasicBlock, BasicBlock> fallThroughs = new HashMap<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            fallThroughs.put(blocks.get(i), fallThrough(blocks, i));
+        }
+        HashMap<BasicBlock, Tuple> jumps = new HashMap<>();
+        for (int i = 0; i < layout.size(); i++) {
+            BasicBlock block = layout.get(i);
+            BasicBlock succ = fallThroughs.get(block);
+            if (succ != null && (i + 1 >= layout.size() || layout.get(i + 1) != succ)) {
+                Tuple last = block.getLast();
+                jumps.put(block, new Tuple(Operator.GOTO, succ.labelOf("Layout"), null, null,
+                        last.getBelongTable(), last.getLine()));
+            }
+        }
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        for (BasicBlock block : layout) {
+            tuples.addAll(block.getTuples());
+            if (jumps.containsKey(block)) {
+                tuples.add(jumps.get(block));
+            }
+        }
+        function.setTuples(tuples);
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 跳转化简: 跳转链压缩, 删除不可达代码, 删除跳到下一条的跳转, 翻转条件跳转
+public class BranchCleanup extends FunctionPass {
+    @Override
+    public String getName() {
+        return "branch-cleanup";
+    }
+
+    @Override
+    public boolean run(Function function) {
+        boolean changed = false;
+        boolean loop = true;
+        while (loop) {
+            loop = threadJumps(function);
+            loop |= removeUnreachable(function);
+            loop |= removeFallThrough(function);
+            loop |= invertBranches(function);
+            changed |= loop;
+        }
+        return changed;
+    }
+
+    // label之后第一条非label的tuple的下标
+    private static int skipLabels(ArrayList<Tuple> tuples, int index) {
+        while (index < tuples.size() && tuples.get(index).getOperator() == Operator.LABEL) {
+            index++;
+        }
+        return index;
+    }
+
+    private static HashMap<String, Integer> labelIndex(ArrayList<Tuple> tuples) {
+        HashMap<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            if (tuples.get(i).getOperator() == Operator.LABEL) {
+                map.put(tuples.get(i).getOperand1().getName(), i);
+            }
+        }
+        return map;
+    }
+
+    public static Tuple retarget(Tuple tuple, Operand label) {
+        if (tuple.getOperator() == Operator.GOTO) {
+            return new Tuple(Operator.GOTO, label, null, null,
+                    tuple.getBelongTable(), tuple.getLine());
+        }
+        return new Tuple(tuple.getOperator(), tuple.getOperand1(), label, null,
+                tuple.getBelongTable(), tuple.getLine());
+    }
+
+    // 目标处是无条件跳转时直接跳到最终目标
+    private boolean threadJumps(Function function) {
+        ArrayList<Tuple> tuples = function.getTuples();
+        HashMap<String, Integer> labels = labelIndex(tuples);
+        boolean changed = false;
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            String target = DefUse.getTarget(tuple);
+            if (target == null || !labels.containsKey(target)) {
+                continue;
+            }
+            Operand finalLabel = null;
+            HashSet<String> visited = new HashSet<>();
+            visited.add(target);
+            int next = skipLabels(tuples, labels.get(target));
+            while (next < tuples.size() && tuples.get(next).getOperator() == Operator.GOTO) {
+                Operand label = tuples.get(next).getOperand1();
+                if (!visited.add(label.getName())) {
+                    // 死循环, 保持原样
+                    finalLabel = null;
+                    break;
+                }
+                finalLabel = label;
+                next = skipLabels(tuples, labels.get(label.getName()));
+            }
+            if (finalLabel != null) {
+                tuples.set(i, retarget(tuple, finalLabel));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // 删除从入口不可达的基本块中的tuple, label保留
+    private boolean removeUnreachable(Function function) {
+        FlowGraph graph = new FlowGraph(function);
+        HashSet<BasicBlock> reachable = graph.getReachable();
+        boolean changed = false;
+        for (BasicBlock block : graph.getBlocks()) {
+            if (!reachable.contains(block)) {
+                changed |= block.getTuples().removeIf(
+                        tuple -> tuple.getOperator() != Operator.LABEL);
+            }
+        }
+        if (changed) {
+            function.setTuples(graph.linearize());
+        }
+        return changed;
+    }
+
+    // 跳转目标就是紧接着的label
+    private boolean removeFallThrough(Function function) {
+        ArrayList<Tuple> tuples = function.getTuples();
+        ArrayList<Tuple> result = new ArrayList<>();
+        boolean changed = false;
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            String target = DefUse.getTarget(tuple);
+            if (target != null && fallsInto(tuples, i + 1, target)) {
+                changed = true;
+                continue;
+            }
+            result.add(tuple);
+        }
+        function.setTuples(result);
+        return changed;
+    }
+
+    private static boolean fallsInto(ArrayList<Tuple> tuples, int index, String label) {
+        while (index < tuples.size() && tuples.get(index).getOperator() == Operator.LABEL) {
+            if (tuples.get(index).getOperand1().getName().equals(label)) {
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    // ifFalse t goto L1; goto L2; L1: ==> ifTrue t goto L2; L1:
+    private boolean invertBranches(Function function) {
+        ArrayList<Tuple> tuples = function.getTuples();
+        boolean changed = false;
+        for (int i = 0; i + 2 < tuples.size(); i++) {
+            Tuple branch = tuples.get(i);
+            Tuple jump = tuples.get(i + 1);
+            if ((branch.getOperator() != Operator.JUMPFALSE
+                    && branch.getOperator() != Operator.JUMPTRUE)
+                    || jump.getOperator() != Operator.GOTO
+                    || !fallsInto(tuples, i + 2, branch.getOperand2().getName())) {
+                continue;
+            }
+            Operator inverse = branch.getOperator() == Operator.JUMPFALSE ?
+                    Operator.JUMPTRUE : Operator.JUMPFALSE;
+            tuples.set(i, new Tuple(inverse, branch.getOperand1(), jump.getOperand1(), null,
+                    branch.getBelongTable(), branch.getLine()));
+            tuples.remove(i + 1);
+            changed = true;
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,302 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolType;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 稀疏条件常量传播: 只沿可能执行的边传播非全局标量的常数值,
+// 条件恒定的跳转折叠为goto或删除, 不可达的基本块只保留label
+// 从未被写入的全局标量视为常数
+public class ConstantPropagation implements Pass {
+    private final HashMap<Template, Integer> globalConsts;
+
+    public ConstantPropagation() {
+        this.globalConsts = new HashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return "sccp";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        findGlobalConsts(program);
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            changed |= run(function);
+        }
+        return changed;
+    }
+
+    private void findGlobalConsts(Program program) {
+        globalConsts.clear();
+        HashSet<Template> written = new HashSet<>();
+        for (Function function : program.getFunctions()) {
+            for (Tuple tuple : function.getTuples()) {
+                Var def = DefUse.getDef(tuple);
+                if (def != null && def.isGlobal()) {
+                    written.add(def.getDef());
+                }
+            }
+        }
+        for (Tuple tuple : program.getGlobals()) {
+            Var var = Var.of(tuple, tuple.getOperand1());
+            if (tuple.getOperator() != Operator.DEF || var == null || var.isArray()
+                    || written.contains(var.getDef())) {
+                continue;
+            }
+            Initializer initVal = var.getDef().getInitVal();
+            globalConsts.put(var.getDef(), initVal.isEmpty() ? 0 : initVal.getConst(0));
+        }
+    }
+
+    // 操作数的常数值, 不是常数则为null
+    private Integer valueOf(Tuple tuple, Operand operand, HashMap<Var, Integer> state) {
+        if (operand == null) {
+            return null;
+        } else if (operand.getType() == OperandType.CONSTVAL) {
+            return operand.getConstVal();
+        }
+        Var var = Var.of(tuple, operand);
+        if (var == null || var.isArray()) {
+            return null;
+        } else if (var.isGlobal()) {
+            return globalConsts.get(var.getDef());
+        }
+        return state.get(var);
+    }
+
+    public static Integer fold(Operator operator, int x, int y) {
+        return switch (operator) {
+            case ASSIGN, POS -> x;
+            case NOT -> x == 0 ? 1 : 0;
+            case NEG -> -x;
+            case ADD -> x + y;
+            case SUB -> x - y;
+            case MUL -> x * y;
+            case DIV -> y == 0 ? null : x / y;
+            case MOD -> y == 0 ? null : x % y;
+            case AND -> x & y;
+            case OR -> x | y;
+            case EQ -> x == y ? 1 : 0;
+            case NEQ -> x != y ? 1 : 0;
+            case LT -> x < y ? 1 : 0;
+            case GT -> x > y ? 1 : 0;
+            case LEQ -> x <= y ? 1 : 0;
+            case GEQ -> x >= y ? 1 : 0;
+            default -> null;
+        };
+    }
+
+    // tuple写入的常数值, 不能确定则为null
+    private Integer evaluate(Tuple tuple, HashMap<Var, Integer> state) {
+        switch (tuple.getOperator()) {
+            case ASSIGN, POS, NOT, NEG: {
+                Integer x = valueOf(tuple, tuple.getOperand1(), state);
+                return x == null ? null : fold(tuple.getOperator(), x, 0);
+            }
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ: {
+                Integer x = valueOf(tuple, tuple.getOperand1(), state);
+                Integer y = valueOf(tuple, tuple.getOperand2(), state);
+                return x == null || y == null ? null : fold(tuple.getOperator(), x, y);
+            }
+            case LOAD: {
+                // 常量数组的常数下标
+                Var array = Var.of(tuple, tuple.getOperand1());
+                Integer offset = valueOf(tuple, tuple.getOperand2(), state);
+                if (array == null || offset == null || !array.getDef().is(SymbolType.CONST)) {
+                    return null;
+                }
+                Initializer initVal = array.getDef().getInitVal();
+                if (!initVal.isConst() || offset < 0 || offset >= initVal.size()) {
+                    return null;
+                }
+                return initVal.getConst(offset);
+            }
+            case DEF: {
+                Initializer initVal = Var.of(tuple, tuple.getOperand1()).getDef().getInitVal();
+                return valueOf(tuple, initVal.getOperand(0), state);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private void transfer(Tuple tuple, HashMap<Var, Integer> state) {
+        Var def = DefUse.getDef(tuple);
+        if (def == null || !def.isLocalScalar()) {
+            return;
+        }
+        Integer value = evaluate(tuple, state);
+        if (value == null) {
+            state.remove(def);
+        } else {
+            state.put(def, value);
+        }
+    }
+
+    // 条件跳转的结果: 1 一定跳转, 0 一定不跳转, -1 不确定
+    private int branchDecision(Tuple tuple, HashMap<Var, Integer> state) {
+        Operator operator = tuple.getOperator();
+        if (operator == Operator.GOTO) {
+            return 1;
+        } else if (operator != Operator.JUMPTRUE && operator != Operator.JUMPFALSE) {
+            return -1;
+        }
+        Integer cond = valueOf(tuple, tuple.getOperand1(), state);
+        if (cond == null) {
+            return -1;
+        }
+        return (cond != 0) == (operator == Operator.JUMPTRUE) ? 1 : 0;
+    }
+
+    // 两个状态的交: 只保留值相同的常数
+    private static boolean meet(HashMap<Var, Integer> into, HashMap<Var, Integer> from) {
+        return into.entrySet().removeIf(entry -> !entry.getValue().equals(from.get(entry.getKey())));
+    }
+
+    private boolean run(Function function) {
+        FlowGraph graph = new FlowGraph(function);
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        // 未到达的基本块没有状态; 状态中没有的变量视为不是常数
+        HashMap<BasicBlock, HashMap<Var, Integer>> in = new HashMap<>();
+        ArrayList<BasicBlock> worklist = new ArrayList<>();
+        in.put(graph.getEntry(), new HashMap<>());
+        worklist.add(graph.getEntry());
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.remove(worklist.size() - 1);
+            HashMap<Var, Integer> state = new HashMap<>(in.get(block));
+            for (Tuple tuple : block.getTuples()) {
+                transfer(tuple, state);
+            }
+            for (BasicBlock succ : executableSuccs(graph, block, state)) {
+                HashMap<Var, Integer> old = in.get(succ);
+                if (old == null) {
+                    in.put(succ, new HashMap<>(state));
+                    worklist.add(succ);
+                } else if (meet(old, state) && !worklist.contains(succ)) {
+                    worklist.add(succ);
+                }
+            }
+        }
+        return rewrite(function, graph, in);
+    }
+
+    private ArrayList<BasicBlock> executableSuccs(FlowGraph graph, BasicBlock block,
+                                                  HashMap<Var, Integer> state) {
+        Tuple last = block.getLast();
+        int decision = branchDecision(last, state);
+        ArrayList<BasicBlock> succs = new ArrayList<>();
+        BasicBlock target = DefUse.isBranch(last) ? graph.getBlock(DefUse.getTarget(last)) : null;
+        BasicBlock next = block.getId() + 1 < graph.getBlocks().size() ?
+                graph.getBlocks().get(block.getId() + 1) : null;
+        if (target != null && decision != 0) {
+            succs.add(target);
+        }
+        if (next != null && !DefUse.isTerminator(last) && decision != 1) {
+            succs.add(next);
+        }
+        return succs;
+    }
+
+    private Operand substitute(Tuple tuple, Operand operand, HashMap<Var, Integer> state) {
+        if (operand == null || operand.getType() == OperandType.CONSTVAL) {
+            return operand;
+        }
+        Integer value = valueOf(tuple, operand, state);
+        return value == null ? operand : Operand.getConstOperand(value);
+    }
+
+    // 把确定的常数代入各条tuple
+    private Tuple rewriteTuple(Tuple tuple, HashMap<Var, Integer> state) {
+        Operator operator = tuple.getOperator();
+        switch (operator) {
+            case ASSIGN, POS, NOT, NEG, ADD, SUB, MUL, DIV, MOD, AND, OR,
+                    EQ, NEQ, LT, GT, LEQ, GEQ, LOAD: {
+                Integer value = evaluate(tuple, state);
+                if (value != null) {
+                    return new Tuple(Operator.ASSIGN, Operand.getConstOperand(value), null,
+                            tuple.getResult(), tuple.getBelongTable(), tuple.getLine());
+                }
+                if (operator == Operator.LOAD) {
+                    return new Tuple(operator, tuple.getOperand1(),
+                            substitute(tuple, tuple.getOperand2(), state), tuple.getResult(),
+                            tuple.getBelongTable(), tuple.getLine());
+                }
+                return new Tuple(operator, substitute(tuple, tuple.getOperand1(), state),
+                        substitute(tuple, tuple.getOperand2(), state), tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine());
+            }
+            case LOADADDR:
+                return new Tuple(operator, tuple.getOperand1(),
+                        substitute(tuple, tuple.getOperand2(), state), tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine());
+            case STORE:
+                return new Tuple(operator, tuple.getOperand1(),
+                        substitute(tuple, tuple.getOperand2(), state),
+                        substitute(tuple, tuple.getResult(), state),
+                        tuple.getBelongTable(), tuple.getLine());
+            case RETURN, PUSH, PRINT:
+                return new Tuple(operator, substitute(tuple, tuple.getOperand1(), state),
+                        tuple.getOperand2(), tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine());
+            case JUMPTRUE, JUMPFALSE: {
+                int decision = branchDecision(tuple, state);
+                if (decision == 0) {
+                    return null;
+                } else if (decision == 1) {
+                    return new Tuple(Operator.GOTO, tuple.getOperand2(), null, null,
+                            tuple.getBelongTable(), tuple.getLine());
+                }
+                return tuple;
+            }
+            default:
+                return tuple;
+        }
+    }
+
+    private static boolean same(Tuple a, Tuple b) {
+        return a.getOperator() == b.getOperator() && a.toString().equals(b.toString());
+    }
+
+    private boolean rewrite(Function function, FlowGraph graph,
+                            HashMap<BasicBlock, HashMap<Var, Integer>> in) {
+        boolean changed = false;
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        for (BasicBlock block : graph.getBlocks()) {
+            if (!in.containsKey(block)) {
+                // 不可达的基本块
+                for (Tuple tuple : block.getTuples()) {
+                    if (tuple.getOperator() == Operator.LABEL) {
+                        tuples.add(tuple);
+                    } else {
+                        changed = true;
+                    }
+                }
+                continue;
+            }
+            HashMap<Var, Integer> state = new HashMap<>(in.get(block));
+            for (Tuple tuple : block.getTuples()) {
+                Tuple result = rewriteTuple(tuple, state);
+                transfer(tuple, state);
+                if (result == null) {
+                    changed = true;
+                    continue;
+                }
+                changed |= result != tuple && !same(result, tuple);
+                tuples.add(result);
+            }
+        }
+        function.setTuples(tuples);
+        return changed;
+    }
+}
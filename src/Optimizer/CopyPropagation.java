@@ -0,0 +1,270 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 复制传播: 先把 $t = a op b; x = $t 合并为 x = a op b,
+// 再用可用复制分析把对x的读取替换为复制的来源, 最后删除不再活跃的复制
+// 只处理非全局的标量, 替换前检查名字在新位置仍解析到同一个变量
+public class CopyPropagation extends FunctionPass {
+    @Override
+    public String getName() {
+        return "copy-propagation";
+    }
+
+    @Override
+    public boolean run(Function function) {
+        boolean changed = splitScalarInits(function);
+        changed |= coalesce(function);
+        changed |= propagate(function);
+        changed |= removeDeadCopies(function);
+        return changed;
+    }
+
+    // 变量名在tuple所在的作用域中是否解析到var
+    private static boolean resolvesTo(Tuple tuple, Operand operand, Var var) {
+        return var.equals(Var.of(tuple, operand));
+    }
+
+    private static boolean isCopy(Tuple tuple) {
+        if (tuple.getOperator() != Operator.ASSIGN
+                || tuple.getOperand1().getType() == OperandType.CONSTVAL) {
+            return false;
+        }
+        Var source = Var.of(tuple, tuple.getOperand1());
+        Var target = Var.of(tuple, tuple.getResult());
+        return source != null && target != null && source.isLocalScalar() && target.isLocalScalar();
+    }
+
+    private static Tuple withResult(Tuple tuple, Operand result) {
+        return new Tuple(tuple.getOperator(), tuple.getOperand1(), tuple.getOperand2(), result,
+                tuple.getBelongTable(), tuple.getLine());
+    }
+
+    // int x = e; ==> int x; x = e; 使标量的初值也能参与复制传播
+    private boolean splitScalarInits(Function function) {
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        boolean changed = false;
+        for (Tuple tuple : function.getTuples()) {
+            tuples.add(tuple);
+            if (tuple.getOperator() != Operator.DEF || DefUse.getDefOperand(tuple) == null) {
+                continue;
+            }
+            Template template = Var.of(tuple, tuple.getOperand1()).getDef();
+            tuples.add(new Tuple(Operator.ASSIGN, template.getInitVal(0), null, tuple.getOperand1(),
+                    tuple.getBelongTable(), tuple.getLine()));
+            template.setInitVal(new Initializer());
+            changed = true;
+        }
+        function.setTuples(tuples);
+        return changed;
+    }
+
+    // $t = ...; (不涉及x和$t的tuple) x = $t ==> x = ...
+    private boolean coalesce(Function function) {
+        boolean changed = false;
+        FlowGraph graph = new FlowGraph(function);
+        Liveness liveness = new Liveness(graph);
+        for (BasicBlock block : graph.getBlocks()) {
+            ArrayList<Tuple> tuples = block.getTuples();
+            ArrayList<HashSet<Var>> liveAfter = liveness.getLiveAfter(block);
+            for (int i = tuples.size() - 1; i > 0; i--) {
+                Tuple copy = tuples.get(i);
+                if (!isCopy(copy) || copy.getOperand1().getType() != OperandType.TEMP) {
+                    continue;
+                }
+                Var temp = Var.of(copy, copy.getOperand1());
+                Var target = Var.of(copy, copy.getResult());
+                if (liveAfter.get(i).contains(temp)) {
+                    continue;
+                }
+                for (int j = i - 1; j >= 0; j--) {
+                    Tuple tuple = tuples.get(j);
+                    if (temp.equals(DefUse.getDef(tuple))) {
+                        if (tuple.getResult() == DefUse.getDefOperand(tuple)
+                                && resolvesTo(tuple, copy.getResult(), target)) {
+                            tuples.set(j, withResult(tuple, copy.getResult()));
+                            tuples.remove(i);
+                            changed = true;
+                        }
+                        break;
+                    }
+                    if (target.equals(DefUse.getDef(tuple)) || DefUse.getUses(tuple).contains(target)
+                            || DefUse.getUses(tuple).contains(temp)) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (changed) {
+            function.setTuples(graph.linearize());
+        }
+        return changed;
+    }
+
+    // 复制的来源, 键为复制的目标
+    private static class Source {
+        private final Var var;
+        private final Operand operand;
+
+        private Source(Var var, Operand operand) {
+            this.var = var;
+            this.operand = operand;
+        }
+    }
+
+    private static void kill(HashMap<Var, Source> state, Var def) {
+        if (def == null) {
+            return;
+        }
+        state.remove(def);
+        state.entrySet().removeIf(entry -> entry.getValue().var.equals(def));
+    }
+
+    // 可以替换时返回复制的来源, 否则返回原操作数
+    private static Operand replace(Tuple tuple, Operand operand, HashMap<Var, Source> state) {
+        if (operand == null || operand.getType() == OperandType.CONSTVAL) {
+            return operand;
+        }
+        Var var = Var.of(tuple, operand);
+        Source source = var == null ? null : state.get(var);
+        if (source == null || !resolvesTo(tuple, source.operand, source.var)) {
+            return operand;
+        }
+        return source.operand;
+    }
+
+    private static void transfer(Tuple tuple, HashMap<Var, Source> state) {
+        Var def = DefUse.getDef(tuple);
+        if (isCopy(tuple)) {
+            Var target = Var.of(tuple, tuple.getResult());
+            Operand operand = replace(tuple, tuple.getOperand1(), state);
+            Var source = Var.of(tuple, operand);
+            kill(state, target);
+            if (!source.equals(target)) {
+                state.put(target, new Source(source, operand));
+            }
+            return;
+        }
+        kill(state, def);
+    }
+
+    private static boolean meet(HashMap<Var, Source> into, HashMap<Var, Source> from) {
+        return into.entrySet().removeIf(entry -> !from.containsKey(entry.getKey())
+                || !from.get(entry.getKey()).var.equals(entry.getValue().var));
+    }
+
+    private static Tuple rewrite(Tuple tuple, HashMap<Var, Source> state) {
+        Operator operator = tuple.getOperator();
+        switch (operator) {
+            case ASSIGN, NOT, NEG, POS, RETURN, JUMPTRUE, JUMPFALSE, PUSH, PRINT:
+                return new Tuple(operator, replace(tuple, tuple.getOperand1(), state),
+                        tuple.getOperand2(), tuple.getResult(), tuple.getBelongTable(), tuple.getLine());
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ:
+                return new Tuple(operator, replace(tuple, tuple.getOperand1(), state),
+                        replace(tuple, tuple.getOperand2(), state), tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine());
+            case LOAD, LOADADDR:
+                return new Tuple(operator, tuple.getOperand1(),
+                        replace(tuple, tuple.getOperand2(), state), tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine());
+            case STORE:
+                return new Tuple(operator, tuple.getOperand1(),
+                        replace(tuple, tuple.getOperand2(), state),
+                        replace(tuple, tuple.getResult(), state),
+                        tuple.getBelongTable(), tuple.getLine());
+            default:
+                return tuple;
+        }
+    }
+
+    private boolean propagate(Function function) {
+        FlowGraph graph = new FlowGraph(function);
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        HashMap<BasicBlock, HashMap<Var, Source>> in = new HashMap<>();
+        in.put(graph.getEntry(), new HashMap<>());
+        boolean loop = true;
+        while (loop) {
+            loop = false;
+            for (BasicBlock block : blocks) {
+                if (!in.containsKey(block)) {
+                    continue;
+                }
+                HashMap<Var, Source> state = new HashMap<>(in.get(block));
+                for (Tuple tuple : block.getTuples()) {
+                    transfer(tuple, state);
+                }
+                for (BasicBlock succ : block.getSuccs()) {
+                    if (!in.containsKey(succ)) {
+                        in.put(succ, new HashMap<>(state));
+                        loop = true;
+                    } else {
+                        loop |= meet(in.get(succ), state);
+                    }
+                }
+            }
+        }
+        boolean changed = false;
+        for (BasicBlock block : blocks) {
+            if (!in.containsKey(block)) {
+                continue;
+            }
+            HashMap<Var, Source> state = new HashMap<>(in.get(block));
+            ArrayList<Tuple> tuples = block.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                Tuple tuple = tuples.get(i);
+                Tuple result = rewrite(tuple, state);
+                transfer(tuple, state);
+                if (!result.toString().equals(tuple.toString())) {
+                    tuples.set(i, result);
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            function.setTuples(graph.linearize());
+        }
+        return changed;
+    }
+
+    // 删除目标不再活跃的复制和自身复制
+    private boolean removeDeadCopies(Function function) {
+        boolean changed = false;
+        boolean loop = true;
+        while (loop) {
+            loop = false;
+            FlowGraph graph = new FlowGraph(function);
+            Liveness liveness = new Liveness(graph);
+            for (BasicBlock block : graph.getBlocks()) {
+                ArrayList<Tuple> tuples = block.getTuples();
+                ArrayList<HashSet<Var>> liveAfter = liveness.getLiveAfter(block);
+                for (int i = tuples.size() - 1; i >= 0; i--) {
+                    Tuple tuple = tuples.get(i);
+                    if (tuple.getOperator() != Operator.ASSIGN) {
+                        continue;
+                    }
+                    Var target = Var.of(tuple, tuple.getResult());
+                    if (target != null && target.isLocalScalar()
+                            && (!liveAfter.get(i).contains(target)
+                            || target.equals(Var.of(tuple, tuple.getOperand1())))) {
+                        tuples.remove(i);
+                        loop = true;
+                    }
+                }
+            }
+            if (loop) {
+                function.setTuples(graph.linearize());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,177 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 死代码删除: 输入输出, 写数组形参, 返回与跳转, 有副作用的调用是根, 从根出发标记被用到的变量的所有定义,
+// 没有被标记的纯计算, 对局部变量, 全局变量和局部数组的写入都删除;
+// 之后再按活跃变量删除局部标量上被覆盖前没有读取的写入
+public class DeadCodeElimination implements Pass {
+    private SideEffects sideEffects;
+
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        sideEffects = new SideEffects(program);
+        boolean changed = mark(program);
+        for (Function function : program.getFunctions()) {
+            while (sweep(function)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // 只计算出一个值而没有其他效果的tuple
+    private boolean isPureDef(Tuple tuple) {
+        return switch (tuple.getOperator()) {
+            case ASSIGN, NOT, NEG, POS, ADD, SUB, MUL, DIV, MOD, AND, OR,
+                    EQ, NEQ, LT, GT, LEQ, GEQ, LOAD, LOADADDR -> true;
+            case CALL -> sideEffects.isPure(tuple.getOperand1().getName());
+            default -> false;
+        };
+    }
+
+    // tuple写入的变量或数组, 只有在它被用到时tuple才需要保留; 总是保留的tuple返回null
+    private Var getTarget(Tuple tuple) {
+        switch (tuple.getOperator()) {
+            case STORE: {
+                Var array = Var.of(tuple, tuple.getOperand1());
+                return array == null || array.isParam() ? null : array;
+            }
+            case DEF: {
+                Var var = Var.of(tuple, tuple.getOperand1());
+                return var != null && var.isArray() && !var.isGlobal() ? var : null;
+            }
+            default:
+                return isPureDef(tuple) ? DefUse.getDef(tuple) : null;
+        }
+    }
+
+    // 需要保留的tuple会用到的变量, STORE的基地址不算作读取数组
+    private static ArrayList<Var> getNeeded(Tuple tuple) {
+        ArrayList<Var> uses = DefUse.getUses(tuple);
+        if (tuple.getOperator() == Operator.STORE) {
+            Var array = Var.of(tuple, tuple.getOperand1());
+            if (array != null && !array.isParam()) {
+                uses.remove(array);
+            }
+        }
+        return uses;
+    }
+
+    private boolean mark(Program program) {
+        HashMap<Var, ArrayList<Tuple>> defs = new HashMap<>();
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = new HashMap<>();
+        HashSet<Tuple> pushes = new HashSet<>();
+        HashSet<Tuple> live = new HashSet<>();
+        ArrayList<Tuple> worklist = new ArrayList<>();
+        for (Function function : program.getFunctions()) {
+            callArgs.putAll(function.getCallArgs());
+        }
+        for (ArrayList<Tuple> args : callArgs.values()) {
+            pushes.addAll(args);
+        }
+        for (Function function : program.getFunctions()) {
+            for (Tuple tuple : function.getTuples()) {
+                Var target = getTarget(tuple);
+                if (target != null) {
+                    defs.computeIfAbsent(target, k -> new ArrayList<>()).add(tuple);
+                } else if (!pushes.contains(tuple) && !(isPureDef(tuple) && tuple.getResult() == null)) {
+                    live.add(tuple);
+                    worklist.add(tuple);
+                }
+            }
+        }
+        HashSet<Var> needed = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            Tuple tuple = worklist.remove(worklist.size() - 1);
+            ArrayList<Tuple> next = new ArrayList<>();
+            for (Var var : getNeeded(tuple)) {
+                if (needed.add(var)) {
+                    next.addAll(defs.getOrDefault(var, new ArrayList<>()));
+                }
+            }
+            if (tuple.getOperator() == Operator.CALL) {
+                next.addAll(callArgs.get(tuple));
+            }
+            for (Tuple def : next) {
+                if (live.add(def)) {
+                    worklist.add(def);
+                }
+            }
+        }
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            ArrayList<Tuple> tuples = new ArrayList<>();
+            for (Tuple tuple : function.getTuples()) {
+                if (live.contains(tuple)) {
+                    tuples.add(tuple);
+                } else if (tuple.getOperator() == Operator.DEF) {
+                    // 数组没有被读取, 只保留声明
+                    tuples.add(tuple);
+                    Var var = Var.of(tuple, tuple.getOperand1());
+                    if (!var.getDef().getInitVal().isEmpty()) {
+                        var.getDef().setInitVal(new Initializer());
+                        changed = true;
+                    }
+                } else {
+                    changed = true;
+                }
+            }
+            function.setTuples(tuples);
+        }
+        return changed;
+    }
+
+    // 按活跃变量删除局部标量上的无用写入, 有副作用的调用只丢弃返回值
+    private boolean sweep(Function function) {
+        FlowGraph graph = new FlowGraph(function);
+        Liveness liveness = new Liveness(graph);
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = function.getCallArgs();
+        HashSet<Tuple> removed = new HashSet<>();
+        boolean changed = false;
+        for (BasicBlock block : graph.getBlocks()) {
+            ArrayList<Tuple> tuples = block.getTuples();
+            HashSet<Var> live = new HashSet<>(liveness.getLiveOut(block));
+            for (int i = tuples.size() - 1; i >= 0; i--) {
+                Tuple tuple = tuples.get(i);
+                if (removed.contains(tuple)) {
+                    continue;
+                }
+                Var def = DefUse.getDef(tuple);
+                boolean deadDef = def != null && def.isLocalScalar() && !live.contains(def);
+                if (deadDef && isPureDef(tuple)) {
+                    removed.add(tuple);
+                    if (tuple.getOperator() == Operator.CALL) {
+                        removed.addAll(callArgs.get(tuple));
+                    }
+                    continue;
+                }
+                if (deadDef && tuple.getOperator() == Operator.CALL) {
+                    tuple = new Tuple(Operator.CALL, tuple.getOperand1(), null, null,
+                            tuple.getBelongTable(), tuple.getLine());
+                    tuples.set(i, tuple);
+                    changed = true;
+                }
+                Liveness.step(tuple, live);
+            }
+        }
+        if (!changed && removed.isEmpty()) {
+            return false;
+        }
+        ArrayList<Tuple> tuples = graph.linearize();
+        tuples.removeIf(removed::contains);
+        function.setTuples(tuples);
+        return true;
+    }
+}
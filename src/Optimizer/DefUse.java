@@ -0,0 +1,112 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+
+// 每条tuple读取和写入的操作数
+public class DefUse {
+    // tuple写入的标量, 没有则为null
+    public static Operand getDefOperand(Tuple tuple) {
+        switch (tuple.getOperator()) {
+            case ASSIGN, NOT, NEG, POS, ADD, SUB, MUL, DIV, MOD, AND, OR,
+                    EQ, NEQ, LT, GT, LEQ, GEQ, CALL, LOAD, LOADADDR:
+                return tuple.getResult();
+            case READ:
+                return tuple.getOperand1();
+            case DEF:
+                Var var = Var.of(tuple, tuple.getOperand1());
+                if (var != null && !var.isArray() && !var.isGlobal()
+                        && !var.getDef().getInitVal().isEmpty()) {
+                    return tuple.getOperand1();
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    // tuple读取的操作数, 包括常数
+    public static ArrayList<Operand> getUseOperands(Tuple tuple) {
+        ArrayList<Operand> uses = new ArrayList<>();
+        switch (tuple.getOperator()) {
+            case ASSIGN, NOT, NEG, POS, RETURN, JUMPTRUE, JUMPFALSE, PUSH:
+                addUse(uses, tuple.getOperand1());
+                break;
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ:
+                addUse(uses, tuple.getOperand1());
+                addUse(uses, tuple.getOperand2());
+                break;
+            case LOAD, LOADADDR:
+                // 数组形参的基地址保存在变量中, 也算作读取
+                addUse(uses, tuple.getOperand1());
+                addUse(uses, tuple.getOperand2());
+                break;
+            case STORE:
+                addUse(uses, tuple.getOperand1());
+                addUse(uses, tuple.getOperand2());
+                addUse(uses, tuple.getResult());
+                break;
+            case PRINT:
+                if (tuple.getOperand1().getType() != OperandType.STR) {
+                    addUse(uses, tuple.getOperand1());
+                }
+                break;
+            case DEF:
+                Var var = Var.of(tuple, tuple.getOperand1());
+                if (var != null && !var.isGlobal()) {
+                    uses.addAll(var.getDef().getInitVal().getOperands());
+                }
+                break;
+            default:
+                break;
+        }
+        return uses;
+    }
+
+    private static void addUse(ArrayList<Operand> uses, Operand operand) {
+        if (operand != null) {
+            uses.add(operand);
+        }
+    }
+
+    public static Var getDef(Tuple tuple) {
+        return Var.of(tuple, getDefOperand(tuple));
+    }
+
+    public static ArrayList<Var> getUses(Tuple tuple) {
+        ArrayList<Var> vars = new ArrayList<>();
+        for (Operand operand : getUseOperands(tuple)) {
+            Var var = Var.of(tuple, operand);
+            if (var != null) {
+                vars.add(var);
+            }
+        }
+        return vars;
+    }
+
+    public static boolean isBranch(Tuple tuple) {
+        Operator operator = tuple.getOperator();
+        return operator == Operator.GOTO || operator == Operator.JUMPTRUE
+                || operator == Operator.JUMPFALSE;
+    }
+
+    // 跳转目标label, 非跳转语句返回null
+    public static String getTarget(Tuple tuple) {
+        return switch (tuple.getOperator()) {
+            case GOTO -> tuple.getOperand1().getName();
+            case JUMPTRUE, JUMPFALSE -> tuple.getOperand2().getName();
+            default -> null;
+        };
+    }
+
+    // 执行后不会顺序执行下一条tuple
+    public static boolean isTerminator(Tuple tuple) {
+        Operator operator = tuple.getOperator();
+        return operator == Operator.GOTO || operator == Operator.RETURN
+                || operator == Operator.EXIT;
+    }
+}
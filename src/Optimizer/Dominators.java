@@ -0,0 +1,119 @@
+package Optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 支配树, 按逆后序迭代计算直接支配者, 只包含从入口可达的基本块
+public class Dominators {
+    private final FlowGraph graph;
+    private final ArrayList<BasicBlock> order;
+    private final HashMap<BasicBlock, Integer> index;
+    private final HashMap<BasicBlock, BasicBlock> idom;
+
+    public Dominators(FlowGraph graph) {
+        this.graph = graph;
+        this.order = new ArrayList<>();
+        this.index = new HashMap<>();
+        this.idom = new HashMap<>();
+        analyze();
+    }
+
+    private void postOrder(BasicBlock block, HashSet<BasicBlock> visited) {
+        // 显式栈, 避免很长的函数递归过深
+        ArrayList<BasicBlock> stack = new ArrayList<>();
+        ArrayList<Integer> next = new ArrayList<>();
+        visited.add(block);
+        stack.add(block);
+        next.add(0);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            BasicBlock current = stack.get(top);
+            int i = next.get(top);
+            if (i < current.getSuccs().size()) {
+                next.set(top, i + 1);
+                BasicBlock succ = current.getSuccs().get(i);
+                if (visited.add(succ)) {
+                    stack.add(succ);
+                    next.add(0);
+                }
+            } else {
+                order.add(current);
+                stack.remove(top);
+                next.remove(top);
+            }
+        }
+    }
+
+    private void analyze() {
+        postOrder(graph.getEntry(), new HashSet<>());
+        Collections.reverse(order);
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i), i);
+        }
+        BasicBlock entry = graph.getEntry();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                if (block == entry) {
+                    continue;
+                }
+                BasicBlock newIdom = null;
+                for (BasicBlock pred : block.getPreds()) {
+                    if (idom.containsKey(pred)) {
+                        newIdom = newIdom == null ? pred : intersect(pred, newIdom);
+                    }
+                }
+                if (newIdom != idom.get(block)) {
+                    idom.put(block, newIdom);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (index.get(a) > index.get(b)) {
+                a = idom.get(a);
+            }
+            while (index.get(b) > index.get(a)) {
+                b = idom.get(b);
+            }
+        }
+        return a;
+    }
+
+    // 可达基本块的逆后序
+    public ArrayList<BasicBlock> getOrder() {
+        return order;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return idom.containsKey(block);
+    }
+
+    // 直接支配者, 入口和不可达的块返回null
+    public BasicBlock getIdom(BasicBlock block) {
+        BasicBlock dominator = idom.get(block);
+        return dominator == block ? null : dominator;
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        if (!isReachable(a) || !isReachable(b)) {
+            return false;
+        }
+        BasicBlock current = b;
+        while (current != a) {
+            BasicBlock next = idom.get(current);
+            if (next == current) {
+                return false;
+            }
+            current = next;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package Optimizer;
+
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 函数内的控制流图, 只有被跳转引用的label才会划分基本块
+public class FlowGraph {
+    private final Function function;
+    private final ArrayList<BasicBlock> blocks;
+    private final HashMap<String, BasicBlock> labelMap;
+
+    public FlowGraph(Function function) {
+        this.function = function;
+        this.blocks = new ArrayList<>();
+        this.labelMap = new HashMap<>();
+        build();
+    }
+
+    private void build() {
+        ArrayList<Tuple> tuples = function.getTuples();
+        HashSet<String> targets = new HashSet<>();
+        for (Tuple tuple : tuples) {
+            String target = DefUse.getTarget(tuple);
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        BasicBlock current = null;
+        for (Tuple tuple : tuples) {
+            boolean isLeader = current == null || (tuple.getOperator() == Operator.LABEL
+                    && targets.contains(tuple.getOperand1().getName()));
+            if (isLeader && (current == null || !current.isEmpty())) {
+                current = new BasicBlock(blocks.size());
+                blocks.add(current);
+            }
+            current.getTuples().add(tuple);
+            if (tuple.getOperator() == Operator.LABEL
+                    && targets.contains(tuple.getOperand1().getName())) {
+                labelMap.put(tuple.getOperand1().getName(), current);
+            }
+            if (DefUse.isTerminator(tuple) || DefUse.isBranch(tuple)) {
+                current = new BasicBlock(blocks.size());
+                blocks.add(current);
+            }
+        }
+        if (current != null && current.isEmpty()) {
+            blocks.remove(current);
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            Tuple last = block.getLast();
+            String target = DefUse.getTarget(last);
+            if (target != null && labelMap.containsKey(target)) {
+                block.addSucc(labelMap.get(target));
+            }
+            if (!DefUse.isTerminator(last) && i + 1 < blocks.size()) {
+                block.addSucc(blocks.get(i + 1));
+            }
+        }
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public ArrayList<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    public BasicBlock getBlock(String label) {
+        return labelMap.get(label);
+    }
+
+    // 从入口可达的基本块
+    public HashSet<BasicBlock> getReachable() {
+        HashSet<BasicBlock> visited = new HashSet<>();
+        ArrayList<BasicBlock> stack = new ArrayList<>();
+        stack.add(getEntry());
+        visited.add(getEntry());
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.remove(stack.size() - 1);
+            for (BasicBlock succ : block.getSuccs()) {
+                if (visited.add(succ)) {
+                    stack.add(succ);
+                }
+            }
+        }
+        return visited;
+    }
+
+    // 将基本块按顺序重新拼接为tuple序列
+    public ArrayList<Tuple> linearize() {
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            tuples.addAll(block.getTuples());
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,75 @@
+package Optimizer;
+
+import IR.Operator;
+import IR.SymbolTable;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// 一个函数对应的tuple区间: name_BEGIN, PUSHAR, ..., name_END, (RETURN)
+public class Function {
+    private final String name;
+    private ArrayList<Tuple> tuples;
+
+    public Function(String name, ArrayList<Tuple> tuples) {
+        this.name = name;
+        this.tuples = tuples;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isMain() {
+        return name.equals("main");
+    }
+
+    public ArrayList<Tuple> getTuples() {
+        return tuples;
+    }
+
+    public void setTuples(ArrayList<Tuple> tuples) {
+        this.tuples = tuples;
+    }
+
+    public Template getTemplate() {
+        return TableTree.getInstance().getTable(0).getTemplate(name);
+    }
+
+    // 函数体符号表, 即PUSHAR所属的符号表
+    public SymbolTable getBodyTable() {
+        return tuples.get(1).getBelongTable();
+    }
+
+    // 每个CALL对应的PUSH: 实参之间不会跳转, 按栈的顺序匹配即可
+    public HashMap<Tuple, ArrayList<Tuple>> getCallArgs() {
+        HashMap<Tuple, ArrayList<Tuple>> args = new HashMap<>();
+        ArrayList<Tuple> stack = new ArrayList<>();
+        for (Tuple tuple : tuples) {
+            if (tuple.getOperator() == Operator.PUSH) {
+                stack.add(tuple);
+            } else if (tuple.getOperator() == Operator.CALL) {
+                int paramNum = TableTree.getInstance().getTable(0)
+                        .getTemplate(tuple.getOperand1().getName()).getParamNum();
+                ArrayList<Tuple> pushes = new ArrayList<>(
+                        stack.subList(stack.size() - paramNum, stack.size()));
+                stack.subList(stack.size() - paramNum, stack.size()).clear();
+                args.put(tuple, pushes);
+            }
+        }
+        return args;
+    }
+
+    public int getSize() {
+        return tuples.size();
+    }
+
+    public static boolean isBegin(ArrayList<Tuple> tuples, int index) {
+        return tuples.get(index).getOperator() == Operator.LABEL
+                && index + 1 < tuples.size()
+                && tuples.get(index + 1).getOperator() == Operator.PUSHAR;
+    }
+}
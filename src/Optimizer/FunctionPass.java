@@ -0,0 +1,15 @@
+package Optimizer;
+
+// 只在单个函数内部进行的优化
+public abstract class FunctionPass implements Pass {
+    @Override
+    public boolean run(Program program) {
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            changed |= run(function);
+        }
+        return changed;
+    }
+
+    public abstract boolean run(Function function);
+}
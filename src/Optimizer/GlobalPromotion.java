@@ -0,0 +1,158 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+// 全局变量标量提升: 函数中在循环内读写的全局标量改用临时变量, 进入函数时读入一次, 返回前写回
+// 读取或写入它的调用之前先写回, 写入它的调用之后重新读入; 循环内有这样的调用时不提升
+// main返回即结束程序, 不再写回
+public class GlobalPromotion extends FunctionPass {
+    private SideEffects sideEffects;
+
+    @Override
+    public String getName() {
+        return "promote";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        sideEffects = new SideEffects(program);
+        return super.run(program);
+    }
+
+    private static Template globalOf(Tuple tuple, Operand operand) {
+        if (operand == null || operand.getType() != OperandType.DEF) {
+            return null;
+        }
+        Var var = Var.of(tuple, operand);
+        return var != null && var.isGlobal() && !var.isArray() ? var.getDef() : null;
+    }
+
+    // 在tuple处按名字能否找到该全局变量, 不被同名的局部变量遮蔽
+    private static boolean isVisible(Tuple tuple, Template global) {
+        return TableTree.getInstance().getTemplate(global.getName(), tuple.getBelongTable(),
+                tuple.getLine()) == global;
+    }
+
+    private boolean touches(String call, Template global) {
+        return sideEffects.readsGlobal(call, global) || sideEffects.writesGlobal(call, global);
+    }
+
+    @Override
+    public boolean run(Function function) {
+        FlowGraph graph = new FlowGraph(function);
+        HashSet<Tuple> inLoop = new HashSet<>();
+        for (Loop loop : Loop.find(graph, new Dominators(graph))) {
+            for (BasicBlock block : loop.getBlocks()) {
+                inLoop.addAll(block.getTuples());
+            }
+        }
+        if (inLoop.isEmpty()) {
+            return false;
+        }
+        ArrayList<Tuple> tuples = function.getTuples();
+        LinkedHashSet<Template> candidates = new LinkedHashSet<>();
+        HashSet<Template> excluded = new HashSet<>();
+        for (Tuple tuple : tuples) {
+            if (tuple.getOperator() == Operator.DEF) {
+                // 局部变量的初值中读取的全局变量不便替换
+                for (Var var : DefUse.getUses(tuple)) {
+                    if (var.isGlobal()) {
+                        excluded.add(var.getDef());
+                    }
+                }
+            } else if (inLoop.contains(tuple)) {
+                for (Operand operand : new Operand[]{tuple.getOperand1(), tuple.getOperand2(),
+                        tuple.getResult()}) {
+                    Template global = globalOf(tuple, operand);
+                    if (global != null) {
+                        candidates.add(global);
+                    }
+                }
+            }
+        }
+        for (Tuple tuple : inLoop) {
+            if (tuple.getOperator() == Operator.CALL) {
+                candidates.removeIf(global -> touches(tuple.getOperand1().getName(), global));
+            }
+        }
+        candidates.removeAll(excluded);
+        // 读入与写回的位置
+        for (int i = 1; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            if (i == 1 || tuple.getOperator() == Operator.RETURN
+                    || tuple.getOperator() == Operator.CALL) {
+                candidates.removeIf(global -> !isVisible(tuple, global));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        HashMap<Template, Operand> temps = new HashMap<>();
+        HashSet<Template> written = new HashSet<>();
+        for (Template global : candidates) {
+            temps.put(global, Operand.getTempOperand());
+        }
+        for (Tuple tuple : tuples) {
+            Var def = DefUse.getDef(tuple);
+            if (def != null && candidates.contains(def.getDef())) {
+                written.add(def.getDef());
+            }
+        }
+
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            Operator operator = tuple.getOperator();
+            if (operator == Operator.RETURN && !function.isMain()) {
+                for (Template global : written) {
+                    result.add(new Tuple(Operator.ASSIGN, temps.get(global), null,
+                            Operand.getDefOperand(global.getName()), tuple.getBelongTable(), tuple.getLine()));
+                }
+            } else if (operator == Operator.CALL) {
+                // 调用之后会重新读入可能被写入的全局变量, 调用只在部分路径上写入时也需要先写回
+                for (Template global : written) {
+                    if (touches(tuple.getOperand1().getName(), global)) {
+                        result.add(new Tuple(Operator.ASSIGN, temps.get(global), null,
+                                Operand.getDefOperand(global.getName()), tuple.getBelongTable(),
+                                tuple.getLine()));
+                    }
+                }
+            }
+            result.add(operator == Operator.DEF ? tuple : new Tuple(operator,
+                    replace(tuple, tuple.getOperand1(), temps), replace(tuple, tuple.getOperand2(), temps),
+                    replace(tuple, tuple.getResult(), temps), tuple.getBelongTable(), tuple.getLine()));
+            if (operator == Operator.CALL) {
+                for (Template global : candidates) {
+                    if (sideEffects.writesGlobal(tuple.getOperand1().getName(), global)) {
+                        result.add(new Tuple(Operator.ASSIGN, Operand.getDefOperand(global.getName()), null,
+                                temps.get(global), tuple.getBelongTable(), tuple.getLine()));
+                    }
+                }
+            }
+            // 进入函数时读入
+            if (i == 1) {
+                for (Template global : candidates) {
+                    result.add(new Tuple(Operator.ASSIGN, Operand.getDefOperand(global.getName()), null,
+                            temps.get(global), tuple.getBelongTable(), tuple.getLine()));
+                }
+            }
+        }
+        function.setTuples(result);
+        return true;
+    }
+
+    private static Operand replace(Tuple tuple, Operand operand, HashMap<Template, Operand> temps) {
+        Template global = globalOf(tuple, operand);
+        return global != null && temps.containsKey(global) ? temps.get(global) : operand;
+    }
+}
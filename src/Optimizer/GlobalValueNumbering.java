@@ -0,0 +1,231 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+// 全局值编号: 不把中间代码改写为SSA, 而是沿控制流计算每个变量当前的值编号,
+// 汇合处各前驱的值不同时给出该基本块上的phi编号(相当于SSA中phi的位置), 运算按运算符与操作数编号哈希
+// 某个运算的值在所有路径上都已经保存在某个变量中时, 改为复制该变量
+public class GlobalValueNumbering extends FunctionPass {
+    private HashMap<String, Integer> numbers;
+    private HashMap<Var, Integer> entryNumbers;
+    private HashMap<Var, Integer> varIds;
+    private HashMap<Tuple, Integer> tupleIds;
+    private HashSet<String> phis;
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    private int idOf(Var var) {
+        return varIds.computeIfAbsent(var, k -> varIds.size());
+    }
+
+    private int entryOf(Var var) {
+        return entryNumbers.computeIfAbsent(var, k -> intern("entry " + idOf(var)));
+    }
+
+    private int intern(String key) {
+        return numbers.computeIfAbsent(key, k -> numbers.size());
+    }
+
+    private int valueOf(HashMap<Var, Integer> state, Tuple tuple, Operand operand) {
+        if (operand.getType() == OperandType.CONSTVAL) {
+            return intern("c" + operand.getConstVal());
+        }
+        Var var = Var.of(tuple, operand);
+        if (var == null || !var.isLocalScalar()) {
+            return -1;
+        }
+        Integer value = state.get(var);
+        return value == null ? entryOf(var) : value;
+    }
+
+    private static boolean isCommutative(Operator operator) {
+        return switch (operator) {
+            case ADD, MUL, AND, OR, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    // 纯运算的值编号, 不是纯运算或操作数未知时返回-1
+    private int expressionOf(HashMap<Var, Integer> state, Tuple tuple) {
+        Operator operator = tuple.getOperator();
+        switch (operator) {
+            case NOT, NEG: {
+                int x = valueOf(state, tuple, tuple.getOperand1());
+                return x < 0 ? -1 : intern(operator + " " + x);
+            }
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ: {
+                int x = valueOf(state, tuple, tuple.getOperand1());
+                int y = valueOf(state, tuple, tuple.getOperand2());
+                if (x < 0 || y < 0) {
+                    return -1;
+                } else if (isCommutative(operator) && x > y) {
+                    return intern(operator + " " + y + " " + x);
+                }
+                return intern(operator + " " + x + " " + y);
+            }
+            case LOADADDR: {
+                // 数组的地址不会改变
+                Var array = Var.of(tuple, tuple.getOperand1());
+                int offset = tuple.getOperand2() == null ? intern("c0") :
+                        valueOf(state, tuple, tuple.getOperand2());
+                if (array == null || offset < 0) {
+                    return -1;
+                }
+                return intern("& " + idOf(array) + " " + offset);
+            }
+            default:
+                return -1;
+        }
+    }
+
+    private void transfer(HashMap<Var, Integer> state, Tuple tuple) {
+        Var def = DefUse.getDef(tuple);
+        if (def == null || !def.isLocalScalar()) {
+            return;
+        }
+        int value;
+        if (tuple.getOperator() == Operator.ASSIGN) {
+            value = valueOf(state, tuple, tuple.getOperand1());
+        } else {
+            value = expressionOf(state, tuple);
+        }
+        if (value < 0) {
+            // 调用, 读取内存等, 每条tuple的结果都不同
+            value = intern("t " + tupleIds.get(tuple));
+        }
+        state.put(def, value);
+    }
+
+    // 各前驱状态的汇合, 值不同的变量使用该基本块上的phi编号, 一旦成为phi就不再改变
+    private HashMap<Var, Integer> meet(BasicBlock block, ArrayList<HashMap<Var, Integer>> states) {
+        HashMap<Var, Integer> result = new HashMap<>();
+        HashSet<Var> vars = new HashSet<>();
+        for (HashMap<Var, Integer> state : states) {
+            vars.addAll(state.keySet());
+        }
+        for (Var var : vars) {
+            String phi = "phi " + block.getId() + " " + idOf(var);
+            Integer value = null;
+            boolean same = !phis.contains(phi);
+            for (HashMap<Var, Integer> state : states) {
+                Integer other = state.get(var);
+                if (other == null) {
+                    other = entryOf(var);
+                }
+                if (value == null) {
+                    value = other;
+                } else if (!value.equals(other)) {
+                    same = false;
+                }
+            }
+            if (!same) {
+                phis.add(phi);
+                value = intern(phi);
+            }
+            result.put(var, value);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean run(Function function) {
+        numbers = new HashMap<>();
+        entryNumbers = new HashMap<>();
+        varIds = new HashMap<>();
+        tupleIds = new HashMap<>();
+        phis = new HashSet<>();
+        for (Tuple tuple : function.getTuples()) {
+            tupleIds.put(tuple, tupleIds.size());
+        }
+        FlowGraph graph = new FlowGraph(function);
+        HashMap<BasicBlock, HashMap<Var, Integer>> in = new HashMap<>();
+        HashMap<BasicBlock, HashMap<Var, Integer>> out = new HashMap<>();
+        in.put(graph.getEntry(), new HashMap<>());
+        boolean loop = true;
+        while (loop) {
+            loop = false;
+            for (BasicBlock block : graph.getBlocks()) {
+                if (block != graph.getEntry()) {
+                    ArrayList<HashMap<Var, Integer>> states = new ArrayList<>();
+                    for (BasicBlock pred : block.getPreds()) {
+                        if (out.containsKey(pred)) {
+                            states.add(out.get(pred));
+                        }
+                    }
+                    if (states.isEmpty()) {
+                        continue;
+                    }
+                    in.put(block, meet(block, states));
+                }
+                HashMap<Var, Integer> state = new HashMap<>(in.get(block));
+                for (Tuple tuple : block.getTuples()) {
+                    transfer(state, tuple);
+                }
+                if (!state.equals(out.get(block))) {
+                    out.put(block, state);
+                    loop = true;
+                }
+            }
+        }
+        return rewrite(function, graph, in);
+    }
+
+    private static Operand operandOf(Var var) {
+        return var.isTemp() ? Operand.getTempOperand(var.getTemp()) :
+                Operand.getDefOperand(var.getDef().getName());
+    }
+
+    // 当前保存着value的变量, 没有则为null
+    private Var findHolder(HashMap<Var, Integer> state, int value, Tuple tuple) {
+        Var best = null;
+        for (Map.Entry<Var, Integer> entry : state.entrySet()) {
+            Var var = entry.getKey();
+            if (entry.getValue() == value && var.equals(Var.of(tuple, operandOf(var)))
+                    && (best == null || idOf(var) < idOf(best))) {
+                best = var;
+            }
+        }
+        return best;
+    }
+
+    private boolean rewrite(Function function, FlowGraph graph,
+                            HashMap<BasicBlock, HashMap<Var, Integer>> in) {
+        boolean changed = false;
+        for (BasicBlock block : graph.getBlocks()) {
+            if (!in.containsKey(block)) {
+                continue;
+            }
+            HashMap<Var, Integer> state = new HashMap<>(in.get(block));
+            ArrayList<Tuple> tuples = block.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                Tuple tuple = tuples.get(i);
+                Var def = DefUse.getDef(tuple);
+                int value = expressionOf(state, tuple);
+                if (def != null && def.isLocalScalar() && value >= 0) {
+                    Var holder = findHolder(state, value, tuple);
+                    if (holder != null && !holder.equals(def)) {
+                        tuples.set(i, new Tuple(Operator.ASSIGN, operandOf(holder), null,
+                                tuple.getResult(), tuple.getBelongTable(), tuple.getLine()));
+                        changed = true;
+                    }
+                }
+                transfer(state, tuple);
+            }
+        }
+        if (changed) {
+            function.setTuples(graph.linearize());
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,312 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+// 归纳变量的强度削弱: 循环中每次迭代只以常数步长改变一次的变量i称为基本归纳变量,
+// 循环内的 t = i * k 改为复制一个随i同步增加 c * k 的新变量, 数组下标计算不再需要乘法
+// 原来的i只剩下循环条件使用时, 把条件改写为新变量与 n * k 比较(线性函数测试替换), 之后i由死代码删除;
+// i * k 溢出回绕时比较结果会改变, 只在i的初值为常数且i能取到的值乘k都不溢出时替换
+public class InductionVariables extends FunctionPass {
+    // 向前查找i初值时最多经过的基本块数
+    private static final int ENTRY_SEARCH = 8;
+    // 基本归纳变量及其唯一的自增tuple
+    private LinkedHashMap<Var, Tuple> increments;
+    private HashMap<Var, Integer> defCounts;
+
+    @Override
+    public String getName() {
+        return "iv";
+    }
+
+    @Override
+    public boolean run(Function function) {
+        boolean changed = false;
+        boolean reduced = true;
+        while (reduced) {
+            reduced = false;
+            FlowGraph graph = new FlowGraph(function);
+            Dominators dominators = new Dominators(graph);
+            Liveness liveness = new Liveness(graph);
+            for (Loop loop : Loop.find(graph, dominators)) {
+                if (reduce(function, graph, dominators, liveness, loop)) {
+                    reduced = true;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // 自增的步长, 不是 i = i + c 或 i = i - c 的形式时返回null
+    static Integer stepOf(Tuple tuple, Var var) {
+        Operand x = tuple.getOperand1();
+        Operand y = tuple.getOperand2();
+        if (tuple.getOperator() == Operator.ADD) {
+            if (var.equals(Var.of(tuple, x)) && y.getType() == OperandType.CONSTVAL) {
+                return y.getConstVal();
+            } else if (var.equals(Var.of(tuple, y)) && x.getType() == OperandType.CONSTVAL) {
+                return x.getConstVal();
+            }
+        } else if (tuple.getOperator() == Operator.SUB) {
+            if (var.equals(Var.of(tuple, x)) && y.getType() == OperandType.CONSTVAL) {
+                return -y.getConstVal();
+            }
+        }
+        return null;
+    }
+
+    // 进入循环时i的常数初值, 沿唯一的前驱向前查找
+    static Integer entryValue(Loop loop, Var iv) {
+        ArrayList<BasicBlock> entries = loop.getEntries();
+        if (entries.size() != 1) {
+            return null;
+        }
+        BasicBlock block = entries.get(0);
+        for (int step = 0; step < ENTRY_SEARCH; step++) {
+            ArrayList<Tuple> tuples = block.getTuples();
+            for (int i = tuples.size() - 1; i >= 0; i--) {
+                Tuple tuple = tuples.get(i);
+                if (iv.equals(DefUse.getDef(tuple))) {
+                    if (tuple.getOperator() == Operator.ASSIGN
+                            && tuple.getOperand1().getType() == OperandType.CONSTVAL) {
+                        return tuple.getOperand1().getConstVal();
+                    }
+                    return null;
+                }
+            }
+            if (block.getPreds().size() != 1) {
+                return null;
+            }
+            block = block.getPreds().get(0);
+        }
+        return null;
+    }
+
+    private void scan(Loop loop) {
+        defCounts = new HashMap<>();
+        HashMap<Var, Tuple> defTuples = new HashMap<>();
+        for (BasicBlock block : loop.getBlocks()) {
+            for (Tuple tuple : block.getTuples()) {
+                Var def = DefUse.getDef(tuple);
+                if (def != null) {
+                    defCounts.merge(def, 1, Integer::sum);
+                    defTuples.put(def, tuple);
+                }
+            }
+        }
+        increments = new LinkedHashMap<>();
+        for (Var var : defTuples.keySet()) {
+            Tuple tuple = defTuples.get(var);
+            if (var.isLocalScalar() && defCounts.get(var) == 1 && stepOf(tuple, var) != null) {
+                increments.put(var, tuple);
+            }
+        }
+    }
+
+    // t = i * k 中的基本归纳变量i, 不是这种形式时返回null
+    private Var ivOf(Tuple tuple) {
+        if (tuple.getOperator() != Operator.MUL) {
+            return null;
+        }
+        Var x = Var.of(tuple, tuple.getOperand1());
+        Var y = Var.of(tuple, tuple.getOperand2());
+        if (x != null && increments.containsKey(x)
+                && tuple.getOperand2().getType() == OperandType.CONSTVAL) {
+            return x;
+        } else if (y != null && increments.containsKey(y)
+                && tuple.getOperand1().getType() == OperandType.CONSTVAL) {
+            return y;
+        }
+        return null;
+    }
+
+    private static int factorOf(Tuple tuple) {
+        return tuple.getOperand1().getType() == OperandType.CONSTVAL ?
+                tuple.getOperand1().getConstVal() : tuple.getOperand2().getConstVal();
+    }
+
+    private boolean reduce(Function function, FlowGraph graph, Dominators dominators,
+                           Liveness liveness, Loop loop) {
+        scan(loop);
+        // 同一个归纳变量乘同一个常数的运算共用一个新变量
+        LinkedHashMap<Var, LinkedHashMap<Integer, ArrayList<Tuple>>> groups = new LinkedHashMap<>();
+        for (BasicBlock block : graph.getBlocks()) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            for (Tuple tuple : block.getTuples()) {
+                Var iv = ivOf(tuple);
+                if (iv != null) {
+                    groups.computeIfAbsent(iv, k -> new LinkedHashMap<>())
+                            .computeIfAbsent(factorOf(tuple), k -> new ArrayList<>()).add(tuple);
+                }
+            }
+        }
+        if (groups.isEmpty()) {
+            return false;
+        }
+        ArrayList<Tuple> preheader = new ArrayList<>();
+        HashMap<Tuple, Tuple> replaced = new HashMap<>();
+        HashMap<Tuple, ArrayList<Tuple>> updates = new HashMap<>();
+        // 线性函数测试替换使用的新变量
+        HashMap<Var, Operand> reducedVars = new HashMap<>();
+        HashMap<Var, Integer> reducedFactors = new HashMap<>();
+        for (Var iv : groups.keySet()) {
+            Tuple increment = increments.get(iv);
+            int step = stepOf(increment, iv);
+            Operand ivOperand = increment.getResult();
+            for (int factor : groups.get(iv).keySet()) {
+                Operand reduced = Operand.getTempOperand();
+                preheader.add(new Tuple(Operator.MUL, ivOperand, Operand.getConstOperand(factor),
+                        reduced, increment.getBelongTable(), increment.getLine()));
+                updates.computeIfAbsent(increment, k -> new ArrayList<>()).add(
+                        new Tuple(Operator.ADD, reduced, Operand.getConstOperand(step * factor),
+                                reduced, increment.getBelongTable(), increment.getLine()));
+                for (Tuple tuple : groups.get(iv).get(factor)) {
+                    replaced.put(tuple, new Tuple(Operator.ASSIGN, reduced, null, tuple.getResult(),
+                            tuple.getBelongTable(), tuple.getLine()));
+                }
+                if (factor > 0 && !reducedVars.containsKey(iv)) {
+                    reducedVars.put(iv, reduced);
+                    reducedFactors.put(iv, factor);
+                }
+            }
+        }
+        for (BasicBlock block : loop.getBlocks()) {
+            ArrayList<Tuple> tuples = new ArrayList<>();
+            for (Tuple tuple : block.getTuples()) {
+                tuples.add(replaced.getOrDefault(tuple, tuple));
+                tuples.addAll(updates.getOrDefault(tuple, new ArrayList<>()));
+            }
+            block.getTuples().clear();
+            block.getTuples().addAll(tuples);
+        }
+        for (Var iv : reducedVars.keySet()) {
+            replaceTest(graph, liveness, loop, iv, reducedVars.get(iv), reducedFactors.get(iv));
+        }
+        function.setTuples(LoopInvariantCodeMotion.insertPreheader(graph, dominators, loop, preheader));
+        return true;
+    }
+
+    // 线性函数测试替换: i只用于自增和与常数n的比较, 且循环结束后不再使用时, 改为比较新变量与 n * k
+    private void replaceTest(FlowGraph graph, Liveness liveness, Loop loop, Var iv,
+                             Operand reduced, int factor) {
+        for (BasicBlock block : loop.getBlocks()) {
+            for (BasicBlock succ : block.getSuccs()) {
+                if (!loop.contains(succ) && liveness.getLiveIn(succ).contains(iv)) {
+                    return;
+                }
+            }
+        }
+        Tuple increment = increments.get(iv);
+        BasicBlock testBlock = null;
+        int testIndex = -1;
+        for (BasicBlock block : loop.getBlocks()) {
+            ArrayList<Tuple> tuples = block.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                Tuple tuple = tuples.get(i);
+                if (tuple == increment || !DefUse.getUses(tuple).contains(iv)) {
+                    continue;
+                }
+                if (testBlock != null || !isTest(tuple, iv)) {
+                    return;
+                }
+                testBlock = block;
+                testIndex = i;
+            }
+        }
+        if (testBlock == null) {
+            return;
+        }
+        Tuple test = testBlock.getTuples().get(testIndex);
+        boolean ivFirst = iv.equals(Var.of(test, test.getOperand1()));
+        Operand bound = ivFirst ? test.getOperand2() : test.getOperand1();
+        Operator cond = continueCondition(loop, testBlock, test, ivFirst);
+        Integer init = entryValue(loop, iv);
+        if (cond == null || init == null
+                || !staysInRange(cond, init, stepOf(increment, iv), bound.getConstVal(), factor)) {
+            return;
+        }
+        long scaled = (long) bound.getConstVal() * factor;
+        Operand scaledBound = Operand.getConstOperand((int) scaled);
+        testBlock.getTuples().set(testIndex, new Tuple(test.getOperator(),
+                ivFirst ? reduced : scaledBound, ivFirst ? scaledBound : reduced,
+                test.getResult(), test.getBelongTable(), test.getLine()));
+        // i的自增只被自己使用, 活跃变量分析无法删除, 在这里直接删除
+        for (BasicBlock block : loop.getBlocks()) {
+            block.getTuples().remove(increment);
+        }
+    }
+
+    // 比较位于唯一的回边起点, 每次迭代都会执行, 并决定是否跳回循环头;
+    // 返回继续循环时i与n满足的关系 (i在左边), 不是这种形式时返回null
+    private static Operator continueCondition(Loop loop, BasicBlock testBlock, Tuple test, boolean ivFirst) {
+        Tuple branch = testBlock.getLast();
+        if (loop.getLatches().size() != 1 || loop.getLatches().get(0) != testBlock
+                || branch.getOperator() != Operator.JUMPTRUE && branch.getOperator() != Operator.JUMPFALSE
+                || !branch.getOperand1().getName().equals(test.getResult().getName())
+                || !loop.getHeader().getLabel().equals(DefUse.getTarget(branch))) {
+            return null;
+        }
+        Operator operator = test.getOperator();
+        if (!ivFirst) {
+            operator = switch (operator) {
+                case LT -> Operator.GT;
+                case LEQ -> Operator.GEQ;
+                case GT -> Operator.LT;
+                case GEQ -> Operator.LEQ;
+                default -> operator;
+            };
+        }
+        if (branch.getOperator() == Operator.JUMPFALSE) {
+            operator = switch (operator) {
+                case LT -> Operator.GEQ;
+                case LEQ -> Operator.GT;
+                case GT -> Operator.LEQ;
+                case GEQ -> Operator.LT;
+                case EQ -> Operator.NEQ;
+                default -> Operator.EQ;
+            };
+        }
+        return operator;
+    }
+
+    // i从init开始每次增加step, 按继续条件一定会停在n附近时, i能取到的值都在
+    // [min(init, n) - |step|, max(init, n) + |step|] 中, 要求这个范围乘k不溢出
+    private static boolean staysInRange(Operator cond, int init, int step, int bound, int factor) {
+        if (step == 0) {
+            return false;
+        }
+        boolean bounded = switch (cond) {
+            case LT, LEQ -> step > 0;
+            case GT, GEQ -> step < 0;
+            case EQ -> true;
+            default -> ((long) bound - init) % step == 0 && ((long) bound - init) / step >= 0;
+        };
+        long low = ((long) Math.min(init, bound) - Math.abs((long) step)) * factor;
+        long high = ((long) Math.max(init, bound) + Math.abs((long) step)) * factor;
+        return bounded && low == (int) low && high == (int) high;
+    }
+
+    // i与常数的比较
+    private static boolean isTest(Tuple tuple, Var iv) {
+        switch (tuple.getOperator()) {
+            case EQ, NEQ, LT, GT, LEQ, GEQ:
+                break;
+            default:
+                return false;
+        }
+        Operand x = tuple.getOperand1();
+        Operand y = tuple.getOperand2();
+        return iv.equals(Var.of(tuple, x)) && y.getType() == OperandType.CONSTVAL
+                || iv.equals(Var.of(tuple, y)) && x.getType() == OperandType.CONSTVAL;
+    }
+}
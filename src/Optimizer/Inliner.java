@@ -0,0 +1,299 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.SymbolType;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 函数内联: 把被调函数的tuple, 符号表子树和label复制到调用点, 省去保存寄存器, 复制参数和建立活动记录的开销
+// 复制的符号表挂在调用点所在的符号表下, 按原来的行号仍然只能查找到复制出的定义;
+// 实参先在PUSH的位置存入新的临时变量, 再在函数体开头赋给复制出的形参, 数组形参保存的是实参的基地址
+public class Inliner implements Pass {
+    // 总是内联的函数体大小
+    private static final int ALWAYS_SIZE = 12;
+    // 循环内的调用, 以及唯一的调用点内联的函数体大小
+    private static final int LOOP_SIZE = 40;
+    // 执行次数反馈中的热点调用内联的函数体大小
+    private static final int HOT_SIZE = 80;
+    private static final long HOT_COUNT = 64;
+    // 内联后调用者的tuple数上限
+    private static final int CALLER_BUDGET = 3000;
+
+    private final Profile profile;
+    private HashMap<String, Integer> callSites;
+
+    public Inliner(Profile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    // 函数体的大小, 不计开头的label, PUSHAR与结尾的label, RETURN
+    static int sizeOf(Function function) {
+        return function.getSize() - 4;
+    }
+
+    // 调用图中能到达自身的函数
+    private static HashSet<String> findRecursive(Program program) {
+        HashMap<String, HashSet<String>> callees = new HashMap<>();
+        for (Function function : program.getFunctions()) {
+            HashSet<String> set = new HashSet<>();
+            for (Tuple tuple : function.getTuples()) {
+                if (tuple.getOperator() == Operator.CALL) {
+                    set.add(tuple.getOperand1().getName());
+                }
+            }
+            callees.put(function.getName(), set);
+        }
+        HashSet<String> recursive = new HashSet<>();
+        for (Function function : program.getFunctions()) {
+            HashSet<String> visited = new HashSet<>();
+            ArrayList<String> stack = new ArrayList<>(callees.get(function.getName()));
+            while (!stack.isEmpty()) {
+                String name = stack.remove(stack.size() - 1);
+                if (name.equals(function.getName())) {
+                    recursive.add(name);
+                    break;
+                }
+                if (visited.add(name)) {
+                    stack.addAll(callees.getOrDefault(name, new HashSet<>()));
+                }
+            }
+        }
+        return recursive;
+    }
+
+    private void countCallSites(Program program) {
+        callSites = new HashMap<>();
+        for (Function function : program.getFunctions()) {
+            for (Tuple tuple : function.getTuples()) {
+                if (tuple.getOperator() == Operator.CALL) {
+                    callSites.merge(tuple.getOperand1().getName(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean run(Program program) {
+        HashSet<String> recursive = findRecursive(program);
+        countCallSites(program);
+        HashMap<String, Integer> before = new HashMap<>(callSites);
+        boolean changed = false;
+        // 被调函数定义在调用者之前, 按顺序处理时被调函数已经完成内联
+        for (Function caller : program.getFunctions()) {
+            boolean inlined = true;
+            while (inlined) {
+                inlined = false;
+                FlowGraph graph = new FlowGraph(caller);
+                HashSet<Tuple> inLoop = new HashSet<>();
+                for (Loop loop : Loop.find(graph, new Dominators(graph))) {
+                    for (BasicBlock block : loop.getBlocks()) {
+                        inLoop.addAll(block.getTuples());
+                    }
+                }
+                for (Tuple call : caller.getTuples()) {
+                    if (call.getOperator() != Operator.CALL) {
+                        continue;
+                    }
+                    Function callee = program.getFunction(call.getOperand1().getName());
+                    if (callee != null && callee != caller && !callee.isMain()
+                            && !recursive.contains(callee.getName())
+                            && shouldInline(caller, call, callee, inLoop.contains(call))
+                            && inline(caller, call, callee)) {
+                        inlined = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        // 所有调用点都被内联的函数不再需要
+        if (changed) {
+            countCallSites(program);
+            program.getFunctions().removeIf(function -> before.containsKey(function.getName())
+                    && !callSites.containsKey(function.getName()) && !function.isMain());
+        }
+        return changed;
+    }
+
+    private boolean shouldInline(Function caller, Tuple call, Function callee, boolean inLoop) {
+        int size = sizeOf(callee);
+        if (caller.getSize() + size > CALLER_BUDGET) {
+            return false;
+        }
+        long count = profile == null ? -1 : profile.getCallCount(caller, call);
+        return size <= ALWAYS_SIZE
+                || size <= LOOP_SIZE && (inLoop || callSites.get(callee.getName()) == 1)
+                || size <= HOT_SIZE && count >= HOT_COUNT;
+    }
+
+    // 复制被调函数的符号表子树, keepParams为false时标量形参改为普通变量
+    static void cloneTables(SymbolTable source, SymbolTable parent,
+                            HashMap<SymbolTable, SymbolTable> tableMap,
+                            HashMap<String, Operand> temps, boolean keepParams) {
+        SymbolTable table = TableTree.getInstance().addTable(parent, source.getSize());
+        tableMap.put(source, table);
+        for (Template template : source.getContent().values()) {
+            Template copy;
+            if (template.is(SymbolType.PARAM) && template.getDimCnt() == 0 && !keepParams) {
+                copy = new Template(template.getName(), Operand.getConstOperand(0),
+                        Operand.getConstOperand(0), false, new Initializer(), template.getLine());
+            } else if (template.is(SymbolType.PARAM)) {
+                copy = new Template(template.getName(), template.getDim1(), template.getDim2(),
+                        template.getLine());
+            } else if (template.is(SymbolType.VAR) || template.is(SymbolType.CONST)) {
+                Initializer initVal = template.getInitVal();
+                if (!initVal.isConst()) {
+                    ArrayList<Operand> operands = new ArrayList<>();
+                    for (int i = 0; i < initVal.size(); i++) {
+                        operands.add(renameTemp(initVal.getOperand(i), temps));
+                    }
+                    initVal = Initializer.ofOperands(operands);
+                }
+                copy = new Template(template.getName(), template.getDim1(), template.getDim2(),
+                        template.is(SymbolType.CONST), initVal, template.getLine());
+            } else {
+                continue;
+            }
+            copy.setOffset(template.getOffset());
+            copy.setBelongTable(table);
+            table.addSymbol(template.getName(), copy);
+        }
+        for (SymbolTable child : source.getChildren()) {
+            cloneTables(child, table, tableMap, temps, keepParams);
+        }
+    }
+
+    static Operand renameTemp(Operand operand, HashMap<String, Operand> temps) {
+        if (operand == null || operand.getType() != OperandType.TEMP) {
+            return operand;
+        }
+        return temps.computeIfAbsent(operand.getName(), k -> Operand.getTempOperand());
+    }
+
+    static Operand renameLabel(Operand operand, HashMap<String, Operand> labels) {
+        if (operand == null || operand.getType() != OperandType.LABEL) {
+            return operand;
+        }
+        return labels.computeIfAbsent(operand.getName(), Operand::getAutoLabelOperand);
+    }
+
+    // 复制的tuple保留原来的行号, 挂在调用点的符号表下; 被调函数读写的全局变量在调用点按该行号
+    // 可能查找到调用者中同名的局部变量(如定义在同一行), 此时不内联
+    private static boolean capturesGlobal(Tuple tuple, Tuple call) {
+        ArrayList<Operand> operands = DefUse.getUseOperands(tuple);
+        operands.add(tuple.getOperand1());
+        operands.add(tuple.getResult());
+        for (Operand operand : operands) {
+            Var var = Var.of(tuple, operand);
+            if (var != null && var.isGlobal() && TableTree.getInstance().getTemplate(operand.getName(),
+                    call.getBelongTable(), tuple.getLine()) != var.getDef()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inline(Function caller, Tuple call, Function callee) {
+        ArrayList<Tuple> calleeTuples = callee.getTuples();
+        SymbolTable bodyTable = callee.getBodyTable();
+        int end = calleeTuples.size() - 1;
+        while (end > 0 && !(calleeTuples.get(end).getOperator() == Operator.LABEL
+                && calleeTuples.get(end).getOperand1().getName().equals(callee.getName() + "_END"))) {
+            end--;
+        }
+        // 函数体中的tuple都应属于函数体符号表的子树
+        HashSet<SymbolTable> subtree = new HashSet<>();
+        ArrayList<SymbolTable> queue = new ArrayList<>();
+        queue.add(bodyTable);
+        while (!queue.isEmpty()) {
+            SymbolTable table = queue.remove(queue.size() - 1);
+            subtree.add(table);
+            queue.addAll(table.getChildren());
+        }
+        for (int i = 2; i < end; i++) {
+            if (!subtree.contains(calleeTuples.get(i).getBelongTable())
+                    || capturesGlobal(calleeTuples.get(i), call)) {
+                return false;
+            }
+        }
+        HashMap<SymbolTable, SymbolTable> tableMap = new HashMap<>();
+        HashMap<String, Operand> temps = new HashMap<>();
+        HashMap<String, Operand> labels = new HashMap<>();
+        cloneTables(bodyTable, call.getBelongTable(), tableMap, temps, false);
+        SymbolTable bodyCopy = tableMap.get(bodyTable);
+
+        // 实参在PUSH的位置存入新的临时变量
+        ArrayList<Tuple> pushes = caller.getCallArgs().get(call);
+        HashMap<Tuple, Tuple> replaced = new HashMap<>();
+        ArrayList<Operand> args = new ArrayList<>();
+        for (Tuple push : pushes) {
+            Operand arg = push.getOperand1();
+            if (arg.getType() == OperandType.CONSTVAL) {
+                args.add(arg);
+                replaced.put(push, null);
+            } else {
+                Operand temp = Operand.getTempOperand();
+                args.add(temp);
+                replaced.put(push, new Tuple(Operator.ASSIGN, arg, null, temp,
+                        push.getBelongTable(), push.getLine()));
+            }
+        }
+        ArrayList<Tuple> body = new ArrayList<>();
+        ArrayList<Operand> params = callee.getTemplate().getParamList();
+        int paramLine = calleeTuples.get(1).getLine();
+        for (Operand param : params) {
+            paramLine = Math.max(paramLine, bodyTable.getTemplate(param.getName()).getLine());
+        }
+        for (int i = 0; i < params.size(); i++) {
+            body.add(new Tuple(Operator.ASSIGN, args.get(i), null,
+                    Operand.getDefOperand(params.get(i).getName()), bodyCopy, paramLine));
+        }
+        Operand endLabel = Operand.getAutoLabelOperand("InlineEnd");
+        for (int i = 2; i < end; i++) {
+            Tuple tuple = calleeTuples.get(i);
+            SymbolTable table = tableMap.get(tuple.getBelongTable());
+            if (tuple.getOperator() == Operator.RETURN) {
+                if (tuple.getOperand1() != null && call.getResult() != null) {
+                    body.add(new Tuple(Operator.ASSIGN, renameTemp(tuple.getOperand1(), temps), null,
+                            call.getResult(), table, tuple.getLine()));
+                }
+                body.add(new Tuple(Operator.GOTO, endLabel, null, null, table, tuple.getLine()));
+            } else {
+                body.add(new Tuple(tuple.getOperator(),
+                        renameLabel(renameTemp(tuple.getOperand1(), temps), labels),
+                        renameLabel(renameTemp(tuple.getOperand2(), temps), labels),
+                        renameTemp(tuple.getResult(), temps), table, tuple.getLine()));
+            }
+        }
+        body.add(new Tuple(Operator.LABEL, endLabel, null, null, call.getBelongTable(), call.getLine()));
+
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        for (Tuple tuple : caller.getTuples()) {
+            if (tuple == call) {
+                tuples.addAll(body);
+            } else if (replaced.containsKey(tuple)) {
+                if (replaced.get(tuple) != null) {
+                    tuples.add(replaced.get(tuple));
+                }
+            } else {
+                tuples.add(tuple);
+            }
+        }
+        caller.setTuples(tuples);
+        return true;
+    }
+}
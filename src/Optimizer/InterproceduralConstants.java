@@ -0,0 +1,269 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 过程间常量传播: 所有调用点对某个标量形参都传入同一个常数时, 在函数开头给形参赋该常数;
+// 热点调用点传入常数时复制出该组常数专用的函数, 交给之后的常量传播折叠
+// 实参仍照常传递, 开头的赋值覆盖形参, 调用约定不变
+public class InterproceduralConstants implements Pass {
+    // 可以特化的函数体大小
+    private static final int SPECIALIZE_SIZE = 150;
+    // 每个函数最多特化的份数
+    private static final int MAX_CLONES = 4;
+    private static final long HOT_COUNT = 64;
+
+    private final Profile profile;
+    // 已经在开头赋过常数的形参
+    private final HashSet<Template> propagated;
+    // 函数名与实参常数 -> 特化出的函数名
+    private final HashMap<String, String> clones;
+    private final HashMap<String, Integer> cloneCnt;
+
+    public InterproceduralConstants(Profile profile) {
+        this.profile = profile;
+        this.propagated = new HashSet<>();
+        this.clones = new HashMap<>();
+        this.cloneCnt = new HashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return "ipcp";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        HashSet<String> called = new HashSet<>();
+        for (Function function : program.getFunctions()) {
+            for (Tuple tuple : function.getTuples()) {
+                if (tuple.getOperator() == Operator.CALL) {
+                    called.add(tuple.getOperand1().getName());
+                }
+            }
+        }
+        boolean changed = propagate(program);
+        changed |= specialize(program);
+        // 所有调用点都改为调用特化函数的原函数不再需要
+        if (changed) {
+            HashSet<String> remaining = new HashSet<>();
+            for (Function function : program.getFunctions()) {
+                for (Tuple tuple : function.getTuples()) {
+                    if (tuple.getOperator() == Operator.CALL) {
+                        remaining.add(tuple.getOperand1().getName());
+                    }
+                }
+            }
+            program.getFunctions().removeIf(function -> called.contains(function.getName())
+                    && !remaining.contains(function.getName()) && !function.isMain());
+        }
+        return changed;
+    }
+
+    // 形参在函数中被读取或写入
+    private static boolean isRead(Function function, Template param) {
+        for (Tuple tuple : function.getTuples()) {
+            for (Var var : DefUse.getUses(tuple)) {
+                if (var.getDef() == param) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWritten(Function function, Template param) {
+        for (Tuple tuple : function.getTuples()) {
+            Var var = DefUse.getDef(tuple);
+            if (var != null && var.getDef() == param) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 在PUSHAR之后给形参赋常数, 行号取形参定义之后以便查找到形参
+    private static void assignParams(Function function, HashMap<Integer, Integer> values) {
+        ArrayList<Tuple> tuples = function.getTuples();
+        SymbolTable bodyTable = function.getBodyTable();
+        ArrayList<Operand> params = function.getTemplate().getParamList();
+        int line = tuples.get(1).getLine();
+        for (Operand param : params) {
+            line = Math.max(line, bodyTable.getTemplate(param.getName()).getLine());
+        }
+        ArrayList<Tuple> assigns = new ArrayList<>();
+        for (int i = 0; i < params.size(); i++) {
+            if (values.containsKey(i)) {
+                assigns.add(new Tuple(Operator.ASSIGN, Operand.getConstOperand(values.get(i)), null,
+                        Operand.getDefOperand(params.get(i).getName()), bodyTable, line));
+            }
+        }
+        tuples.addAll(2, assigns);
+    }
+
+    private boolean propagate(Program program) {
+        HashMap<String, ArrayList<Tuple>> sites = new HashMap<>();
+        HashMap<Tuple, Function> callers = new HashMap<>();
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = new HashMap<>();
+        for (Function function : program.getFunctions()) {
+            HashMap<Tuple, ArrayList<Tuple>> args = function.getCallArgs();
+            callArgs.putAll(args);
+            for (Tuple call : args.keySet()) {
+                sites.computeIfAbsent(call.getOperand1().getName(), k -> new ArrayList<>()).add(call);
+                callers.put(call, function);
+            }
+        }
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            if (function.isMain() || !sites.containsKey(function.getName())) {
+                continue;
+            }
+            SymbolTable bodyTable = function.getBodyTable();
+            ArrayList<Operand> params = function.getTemplate().getParamList();
+            HashMap<Integer, Integer> values = new HashMap<>();
+            for (int i = 0; i < params.size(); i++) {
+                Template param = bodyTable.getTemplate(params.get(i).getName());
+                if (param.getDimCnt() != 0 || propagated.contains(param)) {
+                    continue;
+                }
+                Integer value = null;
+                boolean constant = true;
+                for (Tuple call : sites.get(function.getName())) {
+                    Tuple push = callArgs.get(call).get(i);
+                    Operand arg = push.getOperand1();
+                    if (arg.getType() == OperandType.CONSTVAL) {
+                        constant = value == null || value == arg.getConstVal();
+                        value = arg.getConstVal();
+                    } else {
+                        // 递归调用原样传递形参时不影响它的值
+                        Var var = Var.of(push, arg);
+                        constant = callers.get(call) == function && var != null
+                                && var.getDef() == param && !isWritten(function, param);
+                    }
+                    if (!constant) {
+                        break;
+                    }
+                }
+                if (constant && value != null) {
+                    values.put(i, value);
+                    propagated.add(param);
+                }
+            }
+            if (!values.isEmpty()) {
+                assignParams(function, values);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean isHot(Function caller, Tuple call, HashSet<Tuple> inLoop) {
+        if (profile != null) {
+            return profile.getCallCount(caller, call) >= HOT_COUNT;
+        }
+        return inLoop.contains(call);
+    }
+
+    private boolean specialize(Program program) {
+        boolean changed = false;
+        for (Function caller : new ArrayList<>(program.getFunctions())) {
+            FlowGraph graph = new FlowGraph(caller);
+            HashSet<Tuple> inLoop = new HashSet<>();
+            for (Loop loop : Loop.find(graph, new Dominators(graph))) {
+                for (BasicBlock block : loop.getBlocks()) {
+                    inLoop.addAll(block.getTuples());
+                }
+            }
+            HashMap<Tuple, ArrayList<Tuple>> callArgs = caller.getCallArgs();
+            ArrayList<Tuple> tuples = caller.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                Tuple call = tuples.get(i);
+                if (call.getOperator() != Operator.CALL) {
+                    continue;
+                }
+                Function callee = program.getFunction(call.getOperand1().getName());
+                if (callee == null || callee == caller || callee.isMain()
+                        || Inliner.sizeOf(callee) > SPECIALIZE_SIZE || !isHot(caller, call, inLoop)) {
+                    continue;
+                }
+                // 只特化函数中读取了的常数形参
+                SymbolTable bodyTable = callee.getBodyTable();
+                ArrayList<Operand> params = callee.getTemplate().getParamList();
+                HashMap<Integer, Integer> values = new HashMap<>();
+                StringBuilder key = new StringBuilder(callee.getName());
+                for (int j = 0; j < params.size(); j++) {
+                    Operand arg = callArgs.get(call).get(j).getOperand1();
+                    Template param = bodyTable.getTemplate(params.get(j).getName());
+                    if (arg.getType() == OperandType.CONSTVAL && param.getDimCnt() == 0
+                            && !propagated.contains(param) && isRead(callee, param)) {
+                        values.put(j, arg.getConstVal());
+                        key.append(' ').append(j).append('=').append(arg.getConstVal());
+                    }
+                }
+                if (values.isEmpty()) {
+                    continue;
+                }
+                String name = clones.get(key.toString());
+                if (name == null) {
+                    if (cloneCnt.getOrDefault(callee.getName(), 0) >= MAX_CLONES) {
+                        continue;
+                    }
+                    cloneCnt.merge(callee.getName(), 1, Integer::sum);
+                    Function clone = cloneFunction(callee);
+                    assignParams(clone, values);
+                    for (int j : values.keySet()) {
+                        propagated.add(clone.getBodyTable().getTemplate(params.get(j).getName()));
+                    }
+                    program.addFunction(clone);
+                    name = clone.getName();
+                    clones.put(key.toString(), name);
+                }
+                tuples.set(i, new Tuple(Operator.CALL, Operand.getDefOperand(name), call.getOperand2(),
+                        call.getResult(), call.getBelongTable(), call.getLine()));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // 复制函数的tuple与符号表子树, 以新名字登记在全局符号表中
+    private static Function cloneFunction(Function function) {
+        SymbolTable root = TableTree.getInstance().getTable(0);
+        String name;
+        int cnt = 0;
+        do {
+            name = function.getName() + "_spec" + cnt++;
+        } while (root.getTemplate(name) != null);
+        Template source = function.getTemplate();
+        HashMap<SymbolTable, SymbolTable> tableMap = new HashMap<>();
+        HashMap<String, Operand> temps = new HashMap<>();
+        HashMap<String, Operand> labels = new HashMap<>();
+        Inliner.cloneTables(function.getBodyTable(), root, tableMap, temps, true);
+        Template template = new Template(name, source.hasRet(),
+                new ArrayList<>(source.getParamList()), source.getLine());
+        template.setBodyId(tableMap.get(function.getBodyTable()).getId());
+        template.setBelongTable(root);
+        root.addSymbol(name, template);
+        labels.put(function.getName() + "_BEGIN", Operand.getLabelOperand(name + "_BEGIN"));
+        labels.put(function.getName() + "_END", Operand.getLabelOperand(name + "_END"));
+
+        ArrayList<Tuple> tuples = new ArrayList<>();
+        for (Tuple tuple : function.getTuples()) {
+            SymbolTable table = tableMap.getOrDefault(tuple.getBelongTable(), tuple.getBelongTable());
+            tuples.add(new Tuple(tuple.getOperator(),
+                    Inliner.renameLabel(Inliner.renameTemp(tuple.getOperand1(), temps), labels),
+                    Inliner.renameLabel(Inliner.renameTemp(tuple.getOperand2(), temps), labels),
+                    Inliner.renameTemp(tuple.getResult(), temps), table, tuple.getLine()));
+        }
+        return new Function(name, tuples);
+    }
+}
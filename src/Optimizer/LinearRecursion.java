@@ -0,0 +1,186 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 线性递归转循环: 自身调用的结果只经过加法(或只经过乘法)与其他值结合后返回时, 如 return n * f(n - 1),
+// 引入累加器 acc, 调用处改为 acc = acc op x 后给形参重新赋值并跳回开头, 其余返回值 v 改为返回 acc op v
+// 整数加法与乘法在溢出回绕时仍满足结合律与交换律, 结果不变
+// 调用之后的运算被移到下一层递归之前进行, 函数有副作用时只允许调用之后直接结合且不读取全局变量
+public class LinearRecursion extends FunctionPass {
+    private SideEffects sideEffects;
+
+    @Override
+    public String getName() {
+        return "linrec";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        sideEffects = new SideEffects(program);
+        return super.run(program);
+    }
+
+    // 调用结果result依次经过的结合运算, 直到作为返回值; 不符合时返回null
+    private static ArrayList<Tuple> findChain(ArrayList<Tuple> tuples, HashMap<String, Integer> labels,
+                                             HashMap<String, Integer> useCnt, int index, Operand result,
+                                             boolean pure) {
+        ArrayList<Tuple> chain = new ArrayList<>();
+        Operand current = result;
+        for (int i = index; i < tuples.size(); i++) {
+            if (!chain.isEmpty() && TailRecursion.isTail(tuples, labels, i, current)) {
+                return chain;
+            }
+            Tuple tuple = tuples.get(i);
+            if (tuple.getOperator() == Operator.LABEL || DefUse.isBranch(tuple)
+                    || DefUse.isTerminator(tuple)) {
+                return null;
+            }
+            boolean uses = false;
+            for (Operand operand : DefUse.getUseOperands(tuple)) {
+                uses |= isSame(operand, current);
+            }
+            if (!uses) {
+                // 调用之后的其他运算, 只有函数没有副作用时才能提前
+                if (!pure) {
+                    return null;
+                }
+                continue;
+            }
+            if (tuple.getOperator() != Operator.ADD && tuple.getOperator() != Operator.MUL
+                    || !chain.isEmpty() && tuple.getOperator() != chain.get(0).getOperator()
+                    || useCnt.getOrDefault(current.getName(), 0) != 1
+                    || tuple.getResult().getType() != OperandType.TEMP) {
+                return null;
+            }
+            Operand other = otherOperand(tuple, current);
+            if (other == null || !pure && Var.of(tuple, other) != null
+                    && Var.of(tuple, other).isGlobal()) {
+                return null;
+            }
+            chain.add(tuple);
+            current = tuple.getResult();
+        }
+        return null;
+    }
+
+    private static boolean isSame(Operand operand, Operand temp) {
+        return operand != null && operand.getType() == OperandType.TEMP
+                && operand.getName().equals(temp.getName());
+    }
+
+    // 结合运算中另一个操作数, 两个操作数都是current时返回null
+    private static Operand otherOperand(Tuple tuple, Operand current) {
+        boolean first = isSame(tuple.getOperand1(), current);
+        boolean second = isSame(tuple.getOperand2(), current);
+        if (first == second) {
+            return null;
+        }
+        return first ? tuple.getOperand2() : tuple.getOperand1();
+    }
+
+    @Override
+    public boolean run(Function function) {
+        if (function.isMain() || !function.getTemplate().hasRet()) {
+            return false;
+        }
+        ArrayList<Tuple> tuples = function.getTuples();
+        boolean pure = sideEffects.isPure(function.getName());
+        HashMap<String, Integer> labels = TailRecursion.labelIndex(tuples);
+        HashMap<String, Integer> useCnt = new HashMap<>();
+        for (Tuple tuple : tuples) {
+            for (Operand operand : DefUse.getUseOperands(tuple)) {
+                if (operand.getType() == OperandType.TEMP) {
+                    useCnt.merge(operand.getName(), 1, Integer::sum);
+                }
+            }
+        }
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = function.getCallArgs();
+        HashMap<Tuple, ArrayList<Tuple>> replaced = new HashMap<>();
+        HashSet<Tuple> combined = new HashSet<>();
+        // 被消去的返回值, 对应的RETURN不再可达
+        HashSet<String> consumed = new HashSet<>();
+        Operand acc = null;
+        Operand entry = null;
+        Operator operator = null;
+        // 从后往前, 两个自身调用的结果相加时(如fib)由后一个调用转为循环, 前一个的结果在调用前已经求出
+        for (int i = tuples.size() - 1; i >= 0; i--) {
+            Tuple call = tuples.get(i);
+            if (call.getOperator() != Operator.CALL || call.getResult() == null
+                    || !call.getOperand1().getName().equals(function.getName())
+                    || replaced.containsKey(call)) {
+                continue;
+            }
+            ArrayList<Tuple> chain = findChain(tuples, labels, useCnt, i + 1, call.getResult(), pure);
+            if (chain == null || operator != null && chain.get(0).getOperator() != operator
+                    || !TailRecursion.canRebind(function, callArgs.get(call))) {
+                continue;
+            }
+            boolean overlaps = false;
+            for (Tuple tuple : chain) {
+                overlaps |= combined.contains(tuple) || replaced.containsKey(tuple);
+            }
+            if (overlaps) {
+                continue;
+            }
+            operator = chain.get(0).getOperator();
+            if (entry == null) {
+                entry = Operand.getAutoLabelOperand("LinearEntry");
+                acc = Operand.getTempOperand();
+            }
+            Operand current = call.getResult();
+            for (Tuple tuple : chain) {
+                Operand other = otherOperand(tuple, current);
+                current = tuple.getResult();
+                replaced.put(tuple, new ArrayList<>());
+                replaced.get(tuple).add(new Tuple(operator, acc, other, acc,
+                        tuple.getBelongTable(), tuple.getLine()));
+                combined.add(tuple);
+            }
+            consumed.add(current.getName());
+            Tuple last = chain.get(chain.size() - 1);
+            ArrayList<Tuple> assigns = TailRecursion.rebind(function, callArgs.get(call), call, replaced);
+            assigns.add(new Tuple(Operator.GOTO, entry, null, null,
+                    last.getBelongTable(), last.getLine()));
+            replaced.get(last).addAll(assigns);
+            replaced.put(call, new ArrayList<>());
+        }
+        if (entry == null) {
+            return false;
+        }
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            if (replaced.containsKey(tuple)) {
+                result.addAll(replaced.get(tuple));
+            } else if (tuple.getOperator() == Operator.RETURN && tuple.getOperand1() != null) {
+                if (!consumed.contains(tuple.getOperand1().getName())) {
+                    Operand value = Operand.getTempOperand();
+                    result.add(new Tuple(operator, acc, tuple.getOperand1(), value,
+                            tuple.getBelongTable(), tuple.getLine()));
+                    result.add(new Tuple(Operator.RETURN, value, null, null,
+                            tuple.getBelongTable(), tuple.getLine()));
+                }
+            } else {
+                result.add(tuple);
+            }
+            // 累加器在PUSHAR之后赋初值, 跳回的位置在赋初值之后
+            if (i == 1) {
+                SymbolTable table = tuple.getBelongTable();
+                int identity = operator == Operator.ADD ? 0 : 1;
+                result.add(new Tuple(Operator.ASSIGN, Operand.getConstOperand(identity), null, acc,
+                        table, tuple.getLine()));
+                result.add(new Tuple(Operator.LABEL, entry, null, null, table, tuple.getLine()));
+            }
+        }
+        function.setTuples(result);
+        return true;
+    }
+}
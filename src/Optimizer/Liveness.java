@@ -0,0 +1,97 @@
+package Optimizer;
+
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 活跃变量分析, 只关心非全局的标量(全局变量和数组总是在内存中)
+public class Liveness {
+    private final FlowGraph graph;
+    private final HashMap<BasicBlock, HashSet<Var>> liveIn;
+    private final HashMap<BasicBlock, HashSet<Var>> liveOut;
+
+    public Liveness(FlowGraph graph) {
+        this.graph = graph;
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+        analyze();
+    }
+
+    private void analyze() {
+        HashMap<BasicBlock, HashSet<Var>> useMap = new HashMap<>();
+        HashMap<BasicBlock, HashSet<Var>> defMap = new HashMap<>();
+        for (BasicBlock block : graph.getBlocks()) {
+            HashSet<Var> use = new HashSet<>();
+            HashSet<Var> def = new HashSet<>();
+            for (Tuple tuple : block.getTuples()) {
+                for (Var var : DefUse.getUses(tuple)) {
+                    if (var.isLocalScalar() && !def.contains(var)) {
+                        use.add(var);
+                    }
+                }
+                Var var = DefUse.getDef(tuple);
+                if (var != null && var.isLocalScalar()) {
+                    def.add(var);
+                }
+            }
+            useMap.put(block, use);
+            defMap.put(block, def);
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            ArrayList<BasicBlock> blocks = graph.getBlocks();
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                HashSet<Var> out = liveOut.get(block);
+                for (BasicBlock succ : block.getSuccs()) {
+                    out.addAll(liveIn.get(succ));
+                }
+                HashSet<Var> in = new HashSet<>(out);
+                in.removeAll(defMap.get(block));
+                in.addAll(useMap.get(block));
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public HashSet<Var> getLiveIn(BasicBlock block) {
+        return liveIn.get(block);
+    }
+
+    public HashSet<Var> getLiveOut(BasicBlock block) {
+        return liveOut.get(block);
+    }
+
+    // 基本块内每条tuple执行之后的活跃变量
+    public ArrayList<HashSet<Var>> getLiveAfter(BasicBlock block) {
+        ArrayList<Tuple> tuples = block.getTuples();
+        ArrayList<HashSet<Var>> result = new ArrayList<>();
+        HashSet<Var> live = new HashSet<>(liveOut.get(block));
+        for (int i = tuples.size() - 1; i >= 0; i--) {
+            result.add(0, new HashSet<>(live));
+            step(tuples.get(i), live);
+        }
+        return result;
+    }
+
+    // 由tuple之后的活跃变量反推tuple之前的活跃变量
+    public static void step(Tuple tuple, HashSet<Var> live) {
+        Var def = DefUse.getDef(tuple);
+        if (def != null) {
+            live.remove(def);
+        }
+        for (Var var : DefUse.getUses(tuple)) {
+            if (var.isLocalScalar()) {
+                live.add(var);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 基本块内的值编号: 运算符与操作数的值编号都相同的运算改为复制之前的结果, 之后由复制传播清理
+// LOAD在写入可能重叠的数组, 调用可能修改该数组的函数后失效; 调用后被修改的全局标量也重新编号;
+// 结果只取决于标量实参的调用按函数名与实参的值编号合并, 删除重复调用的PUSH
+public class LocalValueNumbering extends FunctionPass {
+    private SideEffects sideEffects;
+    private HashMap<Tuple, ArrayList<Tuple>> callArgs;
+    private HashMap<Tuple, Integer> pushNumbers;
+    private HashSet<Tuple> removed;
+    private HashMap<Var, Integer> varNumbers;
+    private HashMap<Integer, Integer> constNumbers;
+    private HashMap<String, Integer> exprNumbers;
+    private HashMap<String, Operand> holders;
+    private HashMap<String, Var> holderVars;
+    private HashMap<String, Var> loadArrays;
+    private HashSet<Var> escaped;
+    private int count;
+
+    @Override
+    public String getName() {
+        return "lvn";
+    }
+
+    private int newNumber() {
+        return count++;
+    }
+
+    private int numberOf(Tuple tuple, Operand operand) {
+        if (operand.getType() == OperandType.CONSTVAL) {
+            return constNumbers.computeIfAbsent(operand.getConstVal(), k -> newNumber());
+        }
+        Var var = Var.of(tuple, operand);
+        if (var == null) {
+            return newNumber();
+        }
+        return varNumbers.computeIfAbsent(var, k -> newNumber());
+    }
+
+    private static boolean isCommutative(Operator operator) {
+        return switch (operator) {
+            case ADD, MUL, AND, OR, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public boolean run(Program program) {
+        sideEffects = new SideEffects(program);
+        return super.run(program);
+    }
+
+    // 表达式的键, 不参与值编号的tuple返回null
+    private String keyOf(Tuple tuple) {
+        Operator operator = tuple.getOperator();
+        switch (operator) {
+            case CALL: {
+                String name = tuple.getOperand1().getName();
+                if (!sideEffects.isConst(name)) {
+                    return null;
+                }
+                StringBuilder key = new StringBuilder(operator + " " + name);
+                for (Tuple push : callArgs.get(tuple)) {
+                    // PUSH不在当前基本块中
+                    if (!pushNumbers.containsKey(push)) {
+                        return null;
+                    }
+                    key.append(' ').append(pushNumbers.get(push));
+                }
+                return key.toString();
+            }
+            case NOT, NEG:
+                return operator + " " + numberOf(tuple, tuple.getOperand1());
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ: {
+                int x = numberOf(tuple, tuple.getOperand1());
+                int y = numberOf(tuple, tuple.getOperand2());
+                if (isCommutative(operator) && x > y) {
+                    return operator + " " + y + " " + x;
+                }
+                return operator + " " + x + " " + y;
+            }
+            case LOAD, LOADADDR: {
+                Var array = Var.of(tuple, tuple.getOperand1());
+                if (array == null) {
+                    return null;
+                }
+                String offset = tuple.getOperand2() == null ? "-" :
+                        String.valueOf(numberOf(tuple, tuple.getOperand2()));
+                return operator + " " + numberOf(tuple, tuple.getOperand1()) + " " + offset;
+            }
+            default:
+                return null;
+        }
+    }
+
+    // 调用后删除被调函数可能改变的LOAD与全局标量的编号
+    private void killCall(String callee) {
+        ArrayList<String> keys = new ArrayList<>();
+        for (String key : loadArrays.keySet()) {
+            Var array = loadArrays.get(key);
+            if (sideEffects.mayChange(callee, array, escaped.contains(array))) {
+                keys.add(key);
+            }
+        }
+        for (String key : keys) {
+            loadArrays.remove(key);
+            exprNumbers.remove(key);
+            holders.remove(key);
+            holderVars.remove(key);
+        }
+        varNumbers.keySet().removeIf(var -> var.isGlobal() && sideEffects.writesGlobal(callee, var.getDef()));
+    }
+
+    // 删除可能被写入改变的LOAD
+    private void killLoads(Var stored) {
+        ArrayList<String> keys = new ArrayList<>();
+        for (String key : loadArrays.keySet()) {
+            Var array = loadArrays.get(key);
+            boolean alias;
+            if (stored == null) {
+                // 无法确定写入的数组: 全局数组, 数组形参和传出去过的局部数组都可能被修改
+                alias = array.isGlobal() || array.isParam() || escaped.contains(array);
+            } else if (stored.isParam()) {
+                alias = array.isGlobal() || array.isParam() || escaped.contains(array);
+            } else if (stored.isGlobal()) {
+                alias = array.equals(stored) || array.isParam();
+            } else {
+                // 内联后数组形参可能指向本函数传出去过的局部数组
+                alias = array.equals(stored) || array.isParam() && escaped.contains(stored);
+            }
+            if (alias) {
+                keys.add(key);
+            }
+        }
+        for (String key : keys) {
+            loadArrays.remove(key);
+            exprNumbers.remove(key);
+            holders.remove(key);
+            holderVars.remove(key);
+        }
+    }
+
+    @Override
+    public boolean run(Function function) {
+        callArgs = function.getCallArgs();
+        escaped = new HashSet<>();
+        for (Tuple tuple : function.getTuples()) {
+            if (tuple.getOperator() == Operator.LOADADDR) {
+                escaped.add(Var.of(tuple, tuple.getOperand1()));
+            }
+        }
+        count = 0;
+        boolean changed = false;
+        FlowGraph graph = new FlowGraph(function);
+        for (BasicBlock block : graph.getBlocks()) {
+            varNumbers = new HashMap<>();
+            constNumbers = new HashMap<>();
+            exprNumbers = new HashMap<>();
+            holders = new HashMap<>();
+            holderVars = new HashMap<>();
+            loadArrays = new HashMap<>();
+            pushNumbers = new HashMap<>();
+            removed = new HashSet<>();
+            ArrayList<Tuple> tuples = block.getTuples();
+            for (int i = 0; i < tuples.size(); i++) {
+                changed |= number(tuples, i);
+            }
+            tuples.removeIf(removed::contains);
+        }
+        if (changed) {
+            function.setTuples(graph.linearize());
+        }
+        return changed;
+    }
+
+    private boolean number(ArrayList<Tuple> tuples, int index) {
+        Tuple tuple = tuples.get(index);
+        Operator operator = tuple.getOperator();
+        boolean changed = false;
+        if (operator == Operator.STORE) {
+            killLoads(Var.of(tuple, tuple.getOperand1()));
+        } else if (operator == Operator.PUSH) {
+            pushNumbers.put(tuple, numberOf(tuple, tuple.getOperand1()));
+        } else if (operator == Operator.CALL) {
+            killCall(tuple.getOperand1().getName());
+        }
+        Var def = DefUse.getDef(tuple);
+        if (def == null) {
+            return false;
+        }
+        String key = keyOf(tuple);
+        int number;
+        if (operator == Operator.ASSIGN) {
+            number = numberOf(tuple, tuple.getOperand1());
+        } else if (key != null && exprNumbers.containsKey(key)) {
+            number = exprNumbers.get(key);
+            Operand holder = holders.get(key);
+            Var holderVar = holderVars.get(key);
+            // 保存结果的变量仍是原来的值, 且在此处能访问到
+            if (holderVar != null && Integer.valueOf(number).equals(varNumbers.get(holderVar))
+                    && holderVar.equals(Var.of(tuple, holder))) {
+                tuples.set(index, new Tuple(Operator.ASSIGN, holder, null, tuple.getResult(),
+                        tuple.getBelongTable(), tuple.getLine()));
+                if (operator == Operator.CALL) {
+                    removed.addAll(callArgs.get(tuple));
+                }
+                changed = true;
+            }
+        } else {
+            number = newNumber();
+            if (key != null) {
+                exprNumbers.put(key, number);
+                if (operator == Operator.LOAD) {
+                    loadArrays.put(key, Var.of(tuple, tuple.getOperand1()));
+                }
+            }
+        }
+        varNumbers.put(def, number);
+        if (key != null && !changed && def.isLocalScalar()) {
+            holders.put(key, tuple.getResult());
+            holderVars.put(key, def);
+        }
+        return changed;
+    }
+}
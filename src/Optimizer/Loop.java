@@ -0,0 +1,93 @@
+package Optimizer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+// 由回边确定的自然循环, 同一个循环头的多条回边合并为一个循环
+public class Loop {
+    private final BasicBlock header;
+    private final LinkedHashSet<BasicBlock> blocks;
+    private final ArrayList<BasicBlock> latches;
+
+    private Loop(BasicBlock header) {
+        this.header = header;
+        this.blocks = new LinkedHashSet<>();
+        this.latches = new ArrayList<>();
+        blocks.add(header);
+    }
+
+    // 函数中的所有自然循环, 内层循环在前
+    public static ArrayList<Loop> find(FlowGraph graph, Dominators dominators) {
+        LinkedHashMap<BasicBlock, Loop> loops = new LinkedHashMap<>();
+        for (BasicBlock block : dominators.getOrder()) {
+            for (BasicBlock succ : block.getSuccs()) {
+                if (dominators.dominates(succ, block)) {
+                    loops.computeIfAbsent(succ, Loop::new).addLatch(block, dominators);
+                }
+            }
+        }
+        ArrayList<Loop> result = new ArrayList<>(loops.values());
+        result.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+        return result;
+    }
+
+    // 从回边的起点逆向搜索到循环头
+    private void addLatch(BasicBlock latch, Dominators dominators) {
+        latches.add(latch);
+        ArrayList<BasicBlock> stack = new ArrayList<>();
+        if (blocks.add(latch)) {
+            stack.add(latch);
+        }
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.remove(stack.size() - 1);
+            for (BasicBlock pred : block.getPreds()) {
+                if (dominators.isReachable(pred) && blocks.add(pred)) {
+                    stack.add(pred);
+                }
+            }
+        }
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    public LinkedHashSet<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public ArrayList<BasicBlock> getLatches() {
+        return latches;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    // 循环外进入循环头的前驱
+    public ArrayList<BasicBlock> getEntries() {
+        ArrayList<BasicBlock> entries = new ArrayList<>();
+        for (BasicBlock pred : header.getPreds()) {
+            if (!blocks.contains(pred)) {
+                entries.add(pred);
+            }
+        }
+        return entries;
+    }
+
+    // 有后继在循环外的块
+    public ArrayList<BasicBlock> getExiting() {
+        ArrayList<BasicBlock> exiting = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            for (BasicBlock succ : block.getSuccs()) {
+                if (!blocks.contains(succ)) {
+                    exiting.add(block);
+                    break;
+                }
+            }
+        }
+        return exiting;
+    }
+}
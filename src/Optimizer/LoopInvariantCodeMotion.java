@@ -0,0 +1,308 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 循环不变量外提: 在自然循环的前置块中提前计算每次迭代结果都相同的tuple
+// 只外提不会出错的运算, 除法和取模要求除数是非零常数, 读数组要求下标一定合法;
+// 结果只取决于标量实参的函数调用在每次迭代都会执行时连同PUSH一起外提
+public class LoopInvariantCodeMotion implements Pass {
+    private SideEffects sideEffects;
+    // 循环内每个变量的写入次数, 以及只写入一次时的tuple
+    private HashMap<Var, Integer> defCounts;
+    private HashMap<Var, Tuple> defTuples;
+    private HashSet<Var> storedArrays;
+    private HashSet<Var> escaped;
+    // 循环内调用的函数
+    private ArrayList<String> calls;
+    private HashSet<Tuple> invariant;
+
+    @Override
+    public String getName() {
+        return "licm";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        sideEffects = new SideEffects(program);
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            escaped = new HashSet<>();
+            for (Tuple tuple : function.getTuples()) {
+                if (tuple.getOperator() == Operator.LOADADDR) {
+                    escaped.add(Var.of(tuple, tuple.getOperand1()));
+                }
+            }
+            // 每次只处理一个循环, 改变控制流后重新分析
+            boolean hoisted = true;
+            while (hoisted) {
+                hoisted = false;
+                FlowGraph graph = new FlowGraph(function);
+                Dominators dominators = new Dominators(graph);
+                Liveness liveness = new Liveness(graph);
+                for (Loop loop : Loop.find(graph, dominators)) {
+                    if (hoist(function, graph, dominators, liveness, loop)) {
+                        hoisted = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void scan(FlowGraph graph, Loop loop) {
+        defCounts = new HashMap<>();
+        defTuples = new HashMap<>();
+        storedArrays = new HashSet<>();
+        calls = new ArrayList<>();
+        for (BasicBlock block : loop.getBlocks()) {
+            for (Tuple tuple : block.getTuples()) {
+                Var def = DefUse.getDef(tuple);
+                if (def != null) {
+                    defCounts.merge(def, 1, Integer::sum);
+                    defTuples.put(def, tuple);
+                }
+                if (tuple.getOperator() == Operator.STORE || tuple.getOperator() == Operator.DEF) {
+                    Var array = Var.of(tuple, tuple.getOperand1());
+                    if (array != null && array.isArray()) {
+                        storedArrays.add(array);
+                    }
+                } else if (tuple.getOperator() == Operator.CALL) {
+                    calls.add(tuple.getOperand1().getName());
+                }
+            }
+        }
+    }
+
+    private boolean isInvariant(Tuple tuple, Operand operand) {
+        if (operand.getType() == OperandType.CONSTVAL) {
+            return true;
+        }
+        Var var = Var.of(tuple, operand);
+        if (var == null) {
+            return false;
+        } else if (var.isArray()) {
+            // 数组的基地址不会改变
+            return true;
+        }
+        int count = defCounts.getOrDefault(var, 0);
+        if (var.isGlobal()) {
+            for (String call : calls) {
+                if (sideEffects.writesGlobal(call, var.getDef())) {
+                    return false;
+                }
+            }
+            return count == 0;
+        }
+        return count == 0 || count == 1 && invariant.contains(defTuples.get(var));
+    }
+
+    // 循环内的写入或调用是否可能改变array的内容
+    private boolean mayChange(Var array) {
+        for (String call : calls) {
+            if (sideEffects.mayChange(call, array, escaped.contains(array))) {
+                return true;
+            }
+        }
+        for (Var stored : storedArrays) {
+            boolean alias;
+            if (stored.isParam()) {
+                alias = array.isGlobal() || array.isParam() || escaped.contains(array);
+            } else if (stored.isGlobal()) {
+                alias = array.equals(stored) || array.isParam();
+            } else {
+                // 内联后数组形参可能指向本函数传出去过的局部数组
+                alias = array.equals(stored) || array.isParam() && escaped.contains(stored);
+            }
+            if (alias) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 常数下标是否一定在数组范围内
+    private static boolean inBounds(Var array, Operand index) {
+        if (index == null || index.getType() != OperandType.CONSTVAL || array.isParam()) {
+            return false;
+        }
+        Template def = array.getDef();
+        int size = def.getDim2().getConstVal() == 0 ? def.getDim1().getConstVal() :
+                def.getDim1().getConstVal() * def.getDim2().getConstVal();
+        return index.getConstVal() >= 0 && index.getConstVal() < size;
+    }
+
+    private boolean isCandidate(Tuple tuple, boolean alwaysRuns, HashSet<Var> headerLive) {
+        Var def = DefUse.getDef(tuple);
+        if (def == null || !def.isLocalScalar() || defCounts.get(def) != 1 || headerLive.contains(def)) {
+            return false;
+        }
+        switch (tuple.getOperator()) {
+            case ASSIGN, NOT, NEG, ADD, SUB, MUL, AND, OR, EQ, NEQ, LT, GT, LEQ, GEQ, LOADADDR:
+                break;
+            case DIV, MOD:
+                if (tuple.getOperand2().getType() != OperandType.CONSTVAL
+                        || tuple.getOperand2().getConstVal() == 0) {
+                    return false;
+                }
+                break;
+            case LOAD: {
+                Var array = Var.of(tuple, tuple.getOperand1());
+                if (array == null || mayChange(array)
+                        || !alwaysRuns && !inBounds(array, tuple.getOperand2())) {
+                    return false;
+                }
+                break;
+            }
+            default:
+                return false;
+        }
+        for (Operand operand : DefUse.getUseOperands(tuple)) {
+            if (!isInvariant(tuple, operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 结果只取决于标量实参的调用, 实参都不变, 且PUSH与CALL之间没有其他调用
+    private boolean isCallCandidate(BasicBlock block, Tuple call,
+                                    HashMap<Tuple, ArrayList<Tuple>> callArgs, HashSet<Var> headerLive) {
+        if (call.getOperator() != Operator.CALL || !sideEffects.isConst(call.getOperand1().getName())) {
+            return false;
+        }
+        Var def = DefUse.getDef(call);
+        if (def == null || !def.isLocalScalar() || defCounts.get(def) != 1 || headerLive.contains(def)) {
+            return false;
+        }
+        ArrayList<Tuple> pushes = callArgs.get(call);
+        ArrayList<Tuple> tuples = block.getTuples();
+        int start = pushes.isEmpty() ? tuples.indexOf(call) : tuples.indexOf(pushes.get(0));
+        if (start < 0) {
+            return false;
+        }
+        for (int i = start; tuples.get(i) != call; i++) {
+            Operator operator = tuples.get(i).getOperator();
+            if (operator == Operator.CALL || operator == Operator.PUSH && !pushes.contains(tuples.get(i))) {
+                return false;
+            }
+        }
+        for (Tuple push : pushes) {
+            if (!isInvariant(push, push.getOperand1())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hoist(Function function, FlowGraph graph, Dominators dominators,
+                          Liveness liveness, Loop loop) {
+        scan(graph, loop);
+        ArrayList<BasicBlock> exiting = loop.getExiting();
+        HashSet<Var> headerLive = liveness.getLiveIn(loop.getHeader());
+        invariant = new HashSet<>();
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = function.getCallArgs();
+        ArrayList<Tuple> hoisted = new ArrayList<>();
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (BasicBlock block : graph.getBlocks()) {
+                if (!loop.contains(block)) {
+                    continue;
+                }
+                // 每次迭代都会执行的块, 其中的读数组在循环执行时一定会发生
+                boolean alwaysRuns = true;
+                for (BasicBlock exit : exiting) {
+                    alwaysRuns &= dominators.dominates(block, exit);
+                }
+                for (Tuple tuple : block.getTuples()) {
+                    if (invariant.contains(tuple)) {
+                        continue;
+                    }
+                    if (isCandidate(tuple, alwaysRuns, headerLive)) {
+                        invariant.add(tuple);
+                        hoisted.add(tuple);
+                        found = true;
+                    } else if (alwaysRuns && isCallCandidate(block, tuple, callArgs, headerLive)) {
+                        // 调用与它的PUSH一起外提
+                        invariant.addAll(callArgs.get(tuple));
+                        hoisted.addAll(callArgs.get(tuple));
+                        invariant.add(tuple);
+                        hoisted.add(tuple);
+                        found = true;
+                    }
+                }
+            }
+        }
+        if (hoisted.isEmpty()) {
+            return false;
+        }
+        function.setTuples(insertPreheader(graph, dominators, loop, hoisted));
+        return true;
+    }
+
+    // 把外提的tuple放到循环前, 唯一的入口块只通向循环头时直接使用它, 否则新建前置块
+    // hoisted中仍在循环内的tuple会被移出
+    static ArrayList<Tuple> insertPreheader(FlowGraph graph, Dominators dominators,
+                                                    Loop loop, ArrayList<Tuple> hoisted) {
+        BasicBlock header = loop.getHeader();
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        int headerIndex = blocks.indexOf(header);
+        // 循环内的块原本顺序执行进入循环头时, 改为显式跳转, 越过前置块
+        BasicBlock fallIn = headerIndex > 0 ? blocks.get(headerIndex - 1) : null;
+        if (fallIn != null && (!loop.contains(fallIn) || DefUse.isTerminator(fallIn.getLast()))) {
+            fallIn = null;
+        }
+        Tuple fallInLast = fallIn == null ? null : fallIn.getLast();
+        HashSet<Tuple> moved = new HashSet<>(hoisted);
+        for (BasicBlock block : loop.getBlocks()) {
+            block.getTuples().removeIf(moved::contains);
+        }
+        ArrayList<BasicBlock> entries = new ArrayList<>();
+        for (BasicBlock entry : loop.getEntries()) {
+            if (dominators.isReachable(entry)) {
+                entries.add(entry);
+            }
+        }
+        if (entries.size() == 1 && entries.get(0).getSuccs().size() == 1) {
+            ArrayList<Tuple> tuples = entries.get(0).getTuples();
+            int index = DefUse.isTerminator(tuples.get(tuples.size() - 1)) ?
+                    tuples.size() - 1 : tuples.size();
+            tuples.addAll(index, hoisted);
+            return graph.linearize();
+        }
+        Operand headerLabel = header.labelOf("LoopHeader");
+        Tuple first = header.getFirst();
+        Operand label = Operand.getAutoLabelOperand("Preheader");
+        for (BasicBlock entry : entries) {
+            ArrayList<Tuple> tuples = entry.getTuples();
+            Tuple last = tuples.get(tuples.size() - 1);
+            if (headerLabel.getName().equals(DefUse.getTarget(last))) {
+                tuples.set(tuples.size() - 1, BranchCleanup.retarget(last, label));
+            }
+        }
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            if (block == header) {
+                if (fallInLast != null) {
+                    result.add(new Tuple(Operator.GOTO, headerLabel, null, null,
+                            fallInLast.getBelongTable(), fallInLast.getLine()));
+                }
+                result.add(new Tuple(Operator.LABEL, label, null, null,
+                        first.getBelongTable(), first.getLine()));
+                result.addAll(hoisted);
+            }
+            result.addAll(block.getTuples());
+        }
+        return result;
+    }
+}
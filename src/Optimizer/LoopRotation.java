@@ -0,0 +1,93 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+
+// 循环旋转: for循环每次迭代都要跳回循环头判断条件再跳进循环体,
+// 改为循环前判断一次条件, 循环末尾复制一份条件判断并直接跳回循环体, 每次迭代只有一次条件跳转
+public class LoopRotation extends FunctionPass {
+    // 复制的循环头不超过的tuple数
+    private static final int MAX_HEADER = 12;
+
+    @Override
+    public String getName() {
+        return "loop-rotate";
+    }
+
+    @Override
+    public boolean run(Function function) {
+        boolean changed = false;
+        boolean rotated = true;
+        while (rotated) {
+            rotated = false;
+            FlowGraph graph = new FlowGraph(function);
+            Dominators dominators = new Dominators(graph);
+            for (Loop loop : Loop.find(graph, dominators)) {
+                if (rotate(function, graph, loop)) {
+                    rotated = true;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean rotate(Function function, FlowGraph graph, Loop loop) {
+        BasicBlock header = loop.getHeader();
+        if (loop.getLatches().size() != 1 || loop.getLatches().get(0) == header) {
+            return false;
+        }
+        BasicBlock latch = loop.getLatches().get(0);
+        Tuple back = latch.getLast();
+        Tuple test = header.getLast();
+        if (back.getOperator() != Operator.GOTO || header.getLabel() == null
+                || !header.getLabel().equals(DefUse.getTarget(back))
+                || test.getOperator() != Operator.JUMPTRUE && test.getOperator() != Operator.JUMPFALSE) {
+            return false;
+        }
+        // 条件不成立时跳出循环, 成立时顺序执行进入循环体
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        int headerIndex = blocks.indexOf(header);
+        BasicBlock exit = graph.getBlock(DefUse.getTarget(test));
+        if (exit == null || loop.contains(exit) || headerIndex + 1 >= blocks.size()) {
+            return false;
+        }
+        BasicBlock body = blocks.get(headerIndex + 1);
+        if (!loop.contains(body) || body == header) {
+            return false;
+        }
+        ArrayList<Tuple> copies = new ArrayList<>();
+        for (Tuple tuple : header.getTuples()) {
+            if (tuple == test) {
+                break;
+            } else if (tuple.getOperator() == Operator.DEF) {
+                return false;
+            } else if (tuple.getOperator() != Operator.LABEL) {
+                copies.add(new Tuple(tuple.getOperator(), tuple.getOperand1(), tuple.getOperand2(),
+                        tuple.getResult(), tuple.getBelongTable(), tuple.getLine()));
+            }
+        }
+        if (copies.size() >= MAX_HEADER) {
+            return false;
+        }
+        Operand bodyLabel = body.labelOf("LoopBody");
+        Operator inverse = test.getOperator() == Operator.JUMPFALSE ?
+                Operator.JUMPTRUE : Operator.JUMPFALSE;
+        copies.add(new Tuple(inverse, test.getOperand1(), bodyLabel, null,
+                test.getBelongTable(), test.getLine()));
+        int latchIndex = blocks.indexOf(latch);
+        if (latchIndex + 1 >= blocks.size() || blocks.get(latchIndex + 1) != exit) {
+            copies.add(new Tuple(Operator.GOTO, test.getOperand2(), null, null,
+                    back.getBelongTable(), back.getLine()));
+        }
+        ArrayList<Tuple> tuples = latch.getTuples();
+        tuples.remove(tuples.size() - 1);
+        tuples.addAll(copies);
+        function.setTuples(graph.linearize());
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+// 循环展开, 只处理旋转后只有一个基本块的计数循环:
+//     B: ...; i = i + c; ...; $t = i < n; ifTrue $t goto B
+// 进入时i和n都是常数且总规模不大时完全展开, 否则按factor展开, 先判断剩余次数是否不少于factor,
+// 不足时进入保留原样的余数循环
+public class LoopUnrolling extends FunctionPass {
+    public static final int DEFAULT_FACTOR = 4;
+    // 完全展开后循环体的总tuple数上限
+    private static final int FULL_BUDGET = 128;
+    // 部分展开的循环体tuple数上限
+    private static final int BODY_BUDGET = 40;
+    // 展开后函数的tuple数上限
+    private static final int FUNCTION_BUDGET = 4000;
+
+    private final int factor;
+    private HashSet<String> unrolled;
+
+    public LoopUnrolling() {
+        this(DEFAULT_FACTOR);
+    }
+
+    public LoopUnrolling(int factor) {
+        this.factor = factor;
+    }
+
+    @Override
+    public String getName() {
+        return "unroll";
+    }
+
+    @Override
+    public boolean run(Function function) {
+        unrolled = new HashSet<>();
+        boolean changed = false;
+        boolean loop = true;
+        while (loop) {
+            loop = false;
+            FlowGraph graph = new FlowGraph(function);
+            Dominators dominators = new Dominators(graph);
+            Liveness liveness = new Liveness(graph);
+            for (Loop candidate : Loop.find(graph, dominators)) {
+                if (unroll(function, graph, liveness, candidate)) {
+                    loop = true;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // 循环比较的运算符, 统一成i在左边的形式, 不是计数循环的比较时返回null
+    private static Operator testOf(Tuple test, Var iv) {
+        Operator operator = test.getOperator();
+        if (iv.equals(Var.of(test, test.getOperand1()))) {
+            return switch (operator) {
+                case LT, LEQ, GT, GEQ, NEQ -> operator;
+                default -> null;
+            };
+        } else if (iv.equals(Var.of(test, test.getOperand2()))) {
+            return switch (operator) {
+                case LT -> Operator.GT;
+                case LEQ -> Operator.GEQ;
+                case GT -> Operator.LT;
+                case GEQ -> Operator.LEQ;
+                case NEQ -> Operator.NEQ;
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    // 常数初值和边界时的执行次数, 超过limit时返回-1
+    private static int tripCount(int init, int step, Operator operator, int bound, int limit) {
+        int value = init;
+        for (int count = 1; count <= limit; count++) {
+            value += step;
+            Integer result = ConstantPropagation.fold(operator, value, bound);
+            if (result == null || result == 0) {
+                return count;
+            }
+        }
+        return -1;
+    }
+
+    private static ArrayList<Tuple> copy(ArrayList<Tuple> body) {
+        ArrayList<Tuple> copies = new ArrayList<>();
+        for (Tuple tuple : body) {
+            copies.add(new Tuple(tuple.getOperator(), tuple.getOperand1(), tuple.getOperand2(),
+                    tuple.getResult(), tuple.getBelongTable(), tuple.getLine()));
+        }
+        return copies;
+    }
+
+    private boolean unroll(Function function, FlowGraph graph, Liveness liveness, Loop loop) {
+        BasicBlock block = loop.getHeader();
+        ArrayList<Tuple> tuples = block.getTuples();
+        if (loop.getBlocks().size() != 1 || block.getLabel() == null
+                || unrolled.contains(block.getLabel()) || tuples.size() < 3) {
+            return false;
+        }
+        Tuple branch = tuples.get(tuples.size() - 1);
+        Tuple test = tuples.get(tuples.size() - 2);
+        if (branch.getOperator() != Operator.JUMPTRUE
+                || !block.getLabel().equals(DefUse.getTarget(branch))
+                || test.getResult() == null
+                || !test.getResult().getName().equals(branch.getOperand1().getName())) {
+            return false;
+        }
+        // 循环体: 去掉块首的label和末尾的比较与跳转
+        ArrayList<Tuple> body = new ArrayList<>();
+        for (int i = 0; i < tuples.size() - 2; i++) {
+            if (tuples.get(i).getOperator() != Operator.LABEL) {
+                body.add(tuples.get(i));
+            }
+        }
+        // i在循环内只有一次写入且是常数步长的自增, n在循环内不变
+        Var iv = null;
+        Operator operator = null;
+        for (Operand operand : new Operand[]{test.getOperand1(), test.getOperand2()}) {
+            Var var = Var.of(test, operand);
+            if (var != null && var.isLocalScalar() && testOf(test, var) != null) {
+                iv = var;
+                operator = testOf(test, var);
+                break;
+            }
+        }
+        if (iv == null) {
+            return false;
+        }
+        Operand bound = iv.equals(Var.of(test, test.getOperand1())) ? test.getOperand2() : test.getOperand1();
+        Var boundVar = Var.of(test, bound);
+        if (bound.getType() != OperandType.CONSTVAL && (boundVar == null || !boundVar.isLocalScalar())) {
+            return false;
+        }
+        Tuple increment = null;
+        for (Tuple tuple : body) {
+            Var def = DefUse.getDef(tuple);
+            if (iv.equals(def)) {
+                if (increment != null) {
+                    return false;
+                }
+                increment = tuple;
+            } else if (def != null && def.equals(boundVar)) {
+                return false;
+            }
+        }
+        if (increment == null || InductionVariables.stepOf(increment, iv) == null) {
+            return false;
+        }
+        int step = InductionVariables.stepOf(increment, iv);
+        // 比较的结果在循环结束后仍被使用时不处理
+        BasicBlock exit = null;
+        for (BasicBlock succ : block.getSuccs()) {
+            if (succ != block) {
+                exit = succ;
+            }
+        }
+        ArrayList<BasicBlock> blocks = graph.getBlocks();
+        int index = blocks.indexOf(block);
+        if (exit == null || index + 1 >= blocks.size() || blocks.get(index + 1) != exit
+                || liveness.getLiveIn(exit).contains(Var.of(test, test.getResult()))) {
+            return false;
+        }
+        ArrayList<Tuple> labels = new ArrayList<>(tuples.subList(0, tuples.size() - 2));
+        labels.removeIf(tuple -> tuple.getOperator() != Operator.LABEL);
+        // 完全展开
+        Integer init = InductionVariables.entryValue(loop, iv);
+        if (init != null && bound.getType() == OperandType.CONSTVAL) {
+            int count = tripCount(init, step, operator, bound.getConstVal(),
+                    FULL_BUDGET / Math.max(1, body.size()));
+            if (count > 0 && function.getSize() + count * body.size() <= FUNCTION_BUDGET) {
+                tuples.clear();
+                tuples.addAll(labels);
+                for (int i = 0; i < count; i++) {
+                    tuples.addAll(copy(body));
+                }
+                // 比较结果在循环外不活跃, 不需要保留最后一次比较
+                unrolled.add(block.getLabel());
+                function.setTuples(graph.linearize());
+                return true;
+            }
+        }
+        // 部分展开: 剩余次数不少于factor的判断需要单调的计数循环
+        boolean increasing = operator == Operator.LT || operator == Operator.LEQ;
+        boolean decreasing = operator == Operator.GT || operator == Operator.GEQ;
+        if (factor < 2 || !(increasing && step > 0 || decreasing && step < 0) || body.size() > BODY_BUDGET
+                || function.getSize() + factor * body.size() > FUNCTION_BUDGET) {
+            return false;
+        }
+        // 剩余次数不少于factor当且仅当 i + (factor - 1) * c 仍满足条件, 即 i op n - (factor - 1) * c
+        long distance = (long) (factor - 1) * step;
+        if (distance != (int) distance) {
+            return false;
+        }
+        ArrayList<Tuple> result = new ArrayList<>(labels);
+        Operand mainLabel = Operand.getAutoLabelOperand("Unroll");
+        Operand restLabel = Operand.getAutoLabelOperand("UnrollRest");
+        Operand limit;
+        if (bound.getType() == OperandType.CONSTVAL) {
+            long value = bound.getConstVal() - distance;
+            if (value != (int) value) {
+                return false;
+            }
+            limit = Operand.getConstOperand((int) value);
+        } else {
+            // n - (factor - 1) * c 会溢出时 (n 小于 INT_MIN + distance, 递减时大于 INT_MAX + distance) 只执行余数循环
+            Operand safe = Operand.getTempOperand();
+            long extreme = (increasing ? Integer.MIN_VALUE : Integer.MAX_VALUE) + distance;
+            result.add(new Tuple(increasing ? Operator.GEQ : Operator.LEQ, bound,
+                    Operand.getConstOperand((int) extreme), safe, test.getBelongTable(), test.getLine()));
+            result.add(new Tuple(Operator.JUMPFALSE, safe, restLabel, null,
+                    branch.getBelongTable(), branch.getLine()));
+            limit = Operand.getTempOperand();
+            result.add(new Tuple(Operator.SUB, bound, Operand.getConstOperand((int) distance), limit,
+                    test.getBelongTable(), test.getLine()));
+        }
+        Operand enough = Operand.getTempOperand();
+        Operand ivOperand = iv.equals(Var.of(test, test.getOperand1())) ? test.getOperand1() : test.getOperand2();
+        result.add(new Tuple(Operator.LABEL, mainLabel, null, null, test.getBelongTable(), test.getLine()));
+        result.add(new Tuple(operator, ivOperand, limit, enough, test.getBelongTable(), test.getLine()));
+        result.add(new Tuple(Operator.JUMPFALSE, enough, restLabel, null,
+                branch.getBelongTable(), branch.getLine()));
+        for (int i = 0; i < factor; i++) {
+            result.addAll(copy(body));
+        }
+        result.addAll(copy(new ArrayList<>(tuples.subList(tuples.size() - 2, tuples.size() - 1))));
+        result.add(new Tuple(Operator.JUMPTRUE, branch.getOperand1(), mainLabel, null,
+                branch.getBelongTable(), branch.getLine()));
+        result.add(new Tuple(Operator.GOTO, exit.labelOf("UnrollEnd"), null, null,
+                branch.getBelongTable(), branch.getLine()));
+        // 余数循环
+        result.add(new Tuple(Operator.LABEL, restLabel, null, null, test.getBelongTable(), test.getLine()));
+        result.addAll(body);
+        result.add(test);
+        result.add(new Tuple(Operator.JUMPTRUE, branch.getOperand1(), restLabel, null,
+                branch.getBelongTable(), branch.getLine()));
+        tuples.clear();
+        tuples.addAll(result);
+        unrolled.add(block.getLabel());
+        unrolled.add(mainLabel.getName());
+        unrolled.add(restLabel.getName());
+        function.setTuples(graph.linearize());
+        return true;
+    }
+}
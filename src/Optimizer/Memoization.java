@@ -0,0 +1,146 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+
+// 记忆化: 结果只取决于标量实参的递归函数, 实参在表的范围内时先查.data中的全局数组, 返回前记录结果
+// 一个参数时表长TABLE_SIZE, 两个参数时每维PAIR_SIZE; 另用一个数组标记已经记录过的位置
+// 只在-memo时进行
+public class Memoization implements Pass {
+    private static final int TABLE_SIZE = 4096;
+    private static final int PAIR_SIZE = 64;
+
+    @Override
+    public String getName() {
+        return "memo";
+    }
+
+    @Override
+    public boolean run(Program program) {
+        SideEffects sideEffects = new SideEffects(program);
+        boolean changed = false;
+        for (Function function : program.getFunctions()) {
+            if (isCandidate(function, sideEffects)) {
+                memoize(program, function);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isCandidate(Function function, SideEffects sideEffects) {
+        Template template = function.getTemplate();
+        if (function.isMain() || !template.hasRet() || !sideEffects.isConst(function.getName())
+                || template.getParamNum() == 0 || template.getParamNum() > 2) {
+            return false;
+        }
+        for (Operand param : template.getParamList()) {
+            if (function.getBodyTable().getTemplate(param.getName()).getDimCnt() != 0) {
+                return false;
+            }
+        }
+        for (Tuple tuple : function.getTuples()) {
+            if (tuple.getOperator() == Operator.CALL
+                    && tuple.getOperand1().getName().equals(function.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 在全局符号表中新建一个清零的一维数组
+    private static Operand addTable(Program program, String name, int size) {
+        SymbolTable root = TableTree.getInstance().getTable(0);
+        String unique = name;
+        for (int i = 0; root.getTemplate(unique) != null; i++) {
+            unique = name + i;
+        }
+        Template template = new Template(unique, Operand.getConstOperand(size),
+                Operand.getConstOperand(0), false, new Initializer(), 0);
+        template.setBelongTable(root);
+        root.addSymbol(unique, template);
+        Operand operand = Operand.getDefOperand(unique);
+        program.getGlobals().add(new Tuple(Operator.DEF, operand, null, null, root, 0));
+        return operand;
+    }
+
+    // 把实参是否在范围内写入inRange
+    private static void addRangeCheck(ArrayList<Tuple> code, Operand param, int size,
+                                      Operand inRange, boolean first, SymbolTable table, int line) {
+        Operand low = Operand.getTempOperand();
+        Operand high = Operand.getTempOperand();
+        code.add(new Tuple(Operator.GEQ, param, Operand.getConstOperand(0), low, table, line));
+        code.add(new Tuple(Operator.LT, param, Operand.getConstOperand(size), high, table, line));
+        if (first) {
+            code.add(new Tuple(Operator.AND, low, high, inRange, table, line));
+        } else {
+            code.add(new Tuple(Operator.AND, inRange, low, inRange, table, line));
+            code.add(new Tuple(Operator.AND, inRange, high, inRange, table, line));
+        }
+    }
+
+    private static void memoize(Program program, Function function) {
+        ArrayList<Operand> params = function.getTemplate().getParamList();
+        int size = params.size() == 1 ? TABLE_SIZE : PAIR_SIZE * PAIR_SIZE;
+        Operand values = addTable(program, function.getName() + "_memo", size);
+        Operand filled = addTable(program, function.getName() + "_memo_set", size);
+        ArrayList<Tuple> tuples = function.getTuples();
+        // 参数的赋值在函数体符号表中, 行号取形参定义之后
+        int line = tuples.get(1).getLine();
+        for (Operand param : params) {
+            line = Math.max(line, function.getBodyTable().getTemplate(param.getName()).getLine());
+        }
+        SymbolTable table = function.getBodyTable();
+
+        // 入口: 计算下标并查表, 函数体内可能修改形参, 下标与是否在范围内保存在临时变量中
+        ArrayList<Tuple> entry = new ArrayList<>();
+        Operand key = Operand.getTempOperand();
+        Operand inRange = Operand.getTempOperand();
+        Operand first = Operand.getDefOperand(params.get(0).getName());
+        if (params.size() == 1) {
+            addRangeCheck(entry, first, TABLE_SIZE, inRange, true, table, line);
+            entry.add(new Tuple(Operator.ASSIGN, first, null, key, table, line));
+        } else {
+            Operand second = Operand.getDefOperand(params.get(1).getName());
+            addRangeCheck(entry, first, PAIR_SIZE, inRange, true, table, line);
+            addRangeCheck(entry, second, PAIR_SIZE, inRange, false, table, line);
+            entry.add(new Tuple(Operator.MUL, first, Operand.getConstOperand(PAIR_SIZE), key,
+                    table, line));
+            entry.add(new Tuple(Operator.ADD, key, second, key, table, line));
+        }
+        Operand skip = Operand.getAutoLabelOperand("MemoMiss");
+        Operand hit = Operand.getTempOperand();
+        Operand result = Operand.getTempOperand();
+        entry.add(new Tuple(Operator.JUMPFALSE, inRange, skip, null, table, line));
+        entry.add(new Tuple(Operator.LOAD, filled, key, hit, table, line));
+        entry.add(new Tuple(Operator.JUMPFALSE, hit, skip, null, table, line));
+        entry.add(new Tuple(Operator.LOAD, values, key, result, table, line));
+        entry.add(new Tuple(Operator.RETURN, result, null, null, table, line));
+        entry.add(new Tuple(Operator.LABEL, skip, null, null, table, line));
+
+        ArrayList<Tuple> body = new ArrayList<>(tuples.subList(0, 2));
+        body.addAll(entry);
+        for (int i = 2; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            if (tuple.getOperator() == Operator.RETURN && tuple.getOperand1() != null) {
+                // 返回前记录结果
+                Operand done = Operand.getAutoLabelOperand("MemoReturn");
+                SymbolTable at = tuple.getBelongTable();
+                body.add(new Tuple(Operator.JUMPFALSE, inRange, done, null, at, tuple.getLine()));
+                body.add(new Tuple(Operator.STORE, values, key, tuple.getOperand1(), at, tuple.getLine()));
+                body.add(new Tuple(Operator.STORE, filled, key, Operand.getConstOperand(1),
+                        at, tuple.getLine()));
+                body.add(new Tuple(Operator.LABEL, done, null, null, at, tuple.getLine()));
+            }
+            body.add(tuple);
+        }
+        function.setTuples(body);
+    }
+}
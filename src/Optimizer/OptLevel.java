@@ -0,0 +1,33 @@
+package Optimizer;
+
+public enum OptLevel {
+    O0(false, false),   // 与原有行为完全一致, 不做任何优化
+    O1(true, false),    // 中间代码优化 + 窥孔优化
+    O2(true, true),     // 在O1的基础上进行寄存器分配
+    ;
+
+    private final boolean peephole;
+    private final boolean regAlloc;
+
+    OptLevel(boolean peephole, boolean regAlloc) {
+        this.peephole = peephole;
+        this.regAlloc = regAlloc;
+    }
+
+    public boolean usePeephole() {
+        return peephole;
+    }
+
+    public boolean useRegAlloc() {
+        return regAlloc;
+    }
+
+    public static OptLevel parse(String arg) {
+        return switch (arg) {
+            case "-O0" -> O0;
+            case "-O1" -> O1;
+            case "-O2" -> O2;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package Optimizer;
+
+public interface Pass {
+    String getName();
+
+    // 返回值表示中间代码是否发生了改变
+    boolean run(Program program);
+}
@@ -0,0 +1,63 @@
+package Optimizer;
+
+import java.util.ArrayList;
+
+// 根据优化等级组织中间代码优化的流水线
+public class PassManager {
+    private final OptLevel level;
+    private final ArrayList<Pass> passes;
+
+    // profile: 执行次数反馈, 没有时为null; unrollFactor: 部分展开循环的倍数, 小于2时不部分展开;
+    // memoize: 是否对纯递归函数记忆化
+    public PassManager(OptLevel level, Profile profile, int unrollFactor, boolean memoize) {
+        this.level = level;
+        this.passes = new ArrayList<>();
+        if (level != OptLevel.O0) {
+            passes.add(new BranchCleanup());
+            passes.add(new TailRecursion());
+            passes.add(new LinearRecursion());
+            if (memoize) {
+                passes.add(new Memoization());
+            }
+            passes.add(new Inliner(profile));
+            passes.add(new InterproceduralConstants(profile));
+            passes.add(new ConstantPropagation());
+            passes.add(new BranchCleanup());
+            passes.add(new CopyPropagation());
+            passes.add(new DeadCodeElimination());
+            passes.add(new GlobalPromotion());
+            passes.add(new LoopRotation());
+            passes.add(new LocalValueNumbering());
+            passes.add(new GlobalValueNumbering());
+            passes.add(new LoopInvariantCodeMotion());
+            passes.add(new InductionVariables());
+            passes.add(new ConstantPropagation());
+            passes.add(new LoopUnrolling(unrollFactor));
+            passes.add(new ConstantPropagation());
+            passes.add(new ScalarReplacement());
+            passes.add(new ConstantPropagation());
+            passes.add(new LocalValueNumbering());
+            passes.add(new CopyPropagation());
+            passes.add(new DeadCodeElimination());
+            if (profile != null) {
+                passes.add(new BlockLayout(profile));
+                passes.add(new BranchCleanup());
+            }
+        }
+    }
+
+    public OptLevel getLevel() {
+        return level;
+    }
+
+    public void run() {
+        if (passes.isEmpty()) {
+            return;
+        }
+        Program program = Program.fromTupleList();
+        for (Pass pass : passes) {
+            pass.run(program);
+        }
+        program.writeBack();
+    }
+}
@@ -0,0 +1,158 @@
+package Optimizer;
+
+import IR.Operator;
+import IR.Tuple;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// 执行次数反馈文件, 按函数名, label和行号与中间代码对应
+// 格式(每行一条):
+//   function <name>
+//   block <label 或 @行号> <次数>
+//   branch <行号> <目标label> <跳转次数> <执行次数>
+//   call <行号> <被调函数> <次数>
+public class Profile {
+    private final HashMap<String, long[]> records;
+    private final ArrayList<String> order;
+
+    public Profile() {
+        this.records = new HashMap<>();
+        this.order = new ArrayList<>();
+    }
+
+    private static String blockKey(String function, Tuple tuple) {
+        if (tuple.getOperator() == Operator.LABEL) {
+            return function + " block " + tuple.getOperand1().getName();
+        }
+        return function + " block @" + tuple.getLine();
+    }
+
+    private static String branchKey(String function, Tuple tuple) {
+        return function + " branch " + tuple.getLine() + " " + DefUse.getTarget(tuple);
+    }
+
+    private static String callKey(String function, Tuple tuple) {
+        return function + " call " + tuple.getLine() + " " + tuple.getOperand1().getName();
+    }
+
+    // 同一个key出现多次时(如同一行的多个基本块)保留较大的次数
+    private void put(String key, long... values) {
+        long[] old = records.get(key);
+        if (old == null) {
+            records.put(key, values);
+            order.add(key);
+        } else if (values[values.length - 1] > old[old.length - 1]) {
+            records.put(key, values);
+        }
+    }
+
+    // 由一次执行的统计结果生成, taken为条件跳转实际跳转的次数
+    public void addFunction(Function function, HashMap<Tuple, Long> counts,
+                            HashMap<Tuple, Long> taken) {
+        String name = function.getName();
+        for (BasicBlock block : new FlowGraph(function).getBlocks()) {
+            put(blockKey(name, block.getFirst()), counts.get(block.getFirst()));
+            for (Tuple tuple : block.getTuples()) {
+                if (DefUse.isBranch(tuple)) {
+                    put(branchKey(name, tuple), taken.get(tuple), counts.get(tuple));
+                } else if (tuple.getOperator() == Operator.CALL) {
+                    put(callKey(name, tuple), counts.get(tuple));
+                }
+            }
+        }
+    }
+
+    public void write(String path) throws IOException {
+        BufferedWriter file = new BufferedWriter(new FileWriter(path));
+        String current = null;
+        for (String key : order) {
+            String function = key.substring(0, key.indexOf(' '));
+            if (!function.equals(current)) {
+                current = function;
+                file.write("function " + function + "\n");
+            }
+            StringBuilder sb = new StringBuilder(key.substring(function.length() + 1));
+            for (long value : records.get(key)) {
+                sb.append(' ').append(value);
+            }
+            file.write(sb + "\n");
+        }
+        file.close();
+    }
+
+    public static Profile read(String path) throws IOException {
+        Profile profile = new Profile();
+        BufferedReader file = new BufferedReader(new FileReader(path));
+        String function = null;
+        String line;
+        while ((line = file.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            if (words[0].equals("function")) {
+                function = words[1];
+                continue;
+            }
+            int keyLength = switch (words[0]) {
+                case "block" -> 2;
+                case "branch", "call" -> 3;
+                default -> 0;
+            };
+            if (function == null || keyLength == 0 || words.length <= keyLength) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(function);
+            for (int i = 0; i < keyLength; i++) {
+                key.append(' ').append(words[i]);
+            }
+            long[] values = new long[words.length - keyLength];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Long.parseLong(words[keyLength + i]);
+            }
+            profile.put(key.toString(), values);
+        }
+        file.close();
+        return profile;
+    }
+
+    // 基本块的执行次数: 优先匹配块内的label, 其次匹配块首的行号, 未知为-1
+    public long getBlockCount(Function function, BasicBlock block) {
+        for (Tuple tuple : block.getTuples()) {
+            if (tuple.getOperator() != Operator.LABEL) {
+                break;
+            }
+            long[] values = records.get(blockKey(function.getName(), tuple));
+            if (values != null) {
+                return values[0];
+            }
+        }
+        for (Tuple tuple : block.getTuples()) {
+            if (tuple.getOperator() != Operator.LABEL) {
+                long[] values = records.get(blockKey(function.getName(), tuple));
+                return values == null ? -1 : values[0];
+            }
+        }
+        return -1;
+    }
+
+    // 条件跳转的跳转次数与执行次数, 未知为null
+    public long[] getBranchCount(Function function, Tuple branch) {
+        return records.get(branchKey(function.getName(), branch));
+    }
+
+    // 调用点的执行次数, 未知为-1
+    public long getCallCount(Function function, Tuple call) {
+        long[] values = records.get(callKey(function.getName(), call));
+        return values == null ? -1 : values[0];
+    }
+
+    // 函数入口的执行次数, 未知为-1
+    public long getEntryCount(Function function) {
+        long[] values = records.get(function.getName() + " block " + function.getName() + "_BEGIN");
+        return values == null ? -1 : values[0];
+    }
+}
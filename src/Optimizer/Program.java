@@ -0,0 +1,73 @@
+package Optimizer;
+
+import IR.Tuple;
+import IR.TupleList;
+
+import java.util.ArrayList;
+
+// 整个程序: 全局声明 + 若干函数
+public class Program {
+    private final ArrayList<Tuple> globals;
+    private final ArrayList<Function> functions;
+
+    public Program(ArrayList<Tuple> tuples) {
+        globals = new ArrayList<>();
+        functions = new ArrayList<>();
+        int i = 0;
+        while (i < tuples.size() && !Function.isBegin(tuples, i)) {
+            globals.add(tuples.get(i++));
+        }
+        while (i < tuples.size()) {
+            String label = tuples.get(i).getOperand1().getName();
+            ArrayList<Tuple> body = new ArrayList<>();
+            body.add(tuples.get(i++));
+            while (i < tuples.size() && !Function.isBegin(tuples, i)) {
+                body.add(tuples.get(i++));
+            }
+            // 去掉"_BEGIN"后缀
+            functions.add(new Function(label.substring(0, label.length() - 6), body));
+        }
+    }
+
+    public static Program fromTupleList() {
+        return new Program(TupleList.getInstance().getTuples());
+    }
+
+    public ArrayList<Tuple> getGlobals() {
+        return globals;
+    }
+
+    public ArrayList<Function> getFunctions() {
+        return functions;
+    }
+
+    public Function getFunction(String name) {
+        for (Function function : functions) {
+            if (function.getName().equals(name)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    // 新函数放在main之前
+    public void addFunction(Function function) {
+        int index = functions.size();
+        while (index > 0 && functions.get(index - 1).isMain()) {
+            index--;
+        }
+        functions.add(index, function);
+    }
+
+    public ArrayList<Tuple> getTuples() {
+        ArrayList<Tuple> tuples = new ArrayList<>(globals);
+        for (Function function : functions) {
+            tuples.addAll(function.getTuples());
+        }
+        return tuples;
+    }
+
+    public void writeBack() {
+        TupleList.getInstance().setTuples(getTuples());
+    }
+}
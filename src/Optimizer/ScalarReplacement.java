@@ -0,0 +1,108 @@
+package Optimizer;
+
+import IR.Initializer;
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolType;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 标量替换: 只用常数下标读写, 且地址没有传出的小局部数组, 每个元素改用一个临时变量
+// 定义处的初值改为逐个赋值, 之后可以分配寄存器并参与常量传播
+public class ScalarReplacement extends FunctionPass {
+    // 替换的数组元素个数上限
+    private static final int MAX_SIZE = 16;
+
+    @Override
+    public String getName() {
+        return "scalar-replace";
+    }
+
+    private static int sizeOf(Template array) {
+        int size = array.getDim1().getConstVal();
+        return array.getDimCnt() == 2 ? size * array.getDim2().getConstVal() : size;
+    }
+
+    private static boolean isLocalArray(Var var) {
+        return var != null && var.isArray() && !var.isGlobal() && !var.isParam();
+    }
+
+    @Override
+    public boolean run(Function function) {
+        ArrayList<Tuple> tuples = function.getTuples();
+        HashSet<Template> candidates = new HashSet<>();
+        HashSet<Template> excluded = new HashSet<>();
+        for (Tuple tuple : tuples) {
+            Operator operator = tuple.getOperator();
+            for (Operand operand : new Operand[]{tuple.getOperand1(), tuple.getOperand2(),
+                    tuple.getResult()}) {
+                Var var = Var.of(tuple, operand);
+                if (!isLocalArray(var)) {
+                    continue;
+                }
+                Template array = var.getDef();
+                boolean constIndex = (operator == Operator.LOAD || operator == Operator.STORE)
+                        && operand == tuple.getOperand1()
+                        && tuple.getOperand2().getType() == OperandType.CONSTVAL
+                        && tuple.getOperand2().getConstVal() >= 0
+                        && tuple.getOperand2().getConstVal() < sizeOf(array);
+                if (constIndex || operator == Operator.DEF && operand == tuple.getOperand1()) {
+                    candidates.add(array);
+                } else {
+                    excluded.add(array);
+                }
+            }
+        }
+        candidates.removeAll(excluded);
+        candidates.removeIf(array -> sizeOf(array) > MAX_SIZE
+                || !array.is(SymbolType.VAR) && !array.is(SymbolType.CONST));
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        HashMap<Template, Operand[]> elements = new HashMap<>();
+        for (Template array : candidates) {
+            Operand[] temps = new Operand[sizeOf(array)];
+            for (int i = 0; i < temps.length; i++) {
+                temps[i] = Operand.getTempOperand();
+            }
+            elements.put(array, temps);
+        }
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (Tuple tuple : tuples) {
+            Var var = Var.of(tuple, tuple.getOperand1());
+            Operand[] temps = var == null ? null : elements.get(var.getDef());
+            if (temps == null) {
+                result.add(tuple);
+                continue;
+            }
+            switch (tuple.getOperator()) {
+                case DEF: {
+                    Initializer initVal = var.getDef().getInitVal();
+                    for (int i = 0; i < initVal.size(); i++) {
+                        result.add(new Tuple(Operator.ASSIGN, initVal.getOperand(i), null, temps[i],
+                                tuple.getBelongTable(), tuple.getLine()));
+                    }
+                    break;
+                }
+                case LOAD:
+                    result.add(new Tuple(Operator.ASSIGN, temps[tuple.getOperand2().getConstVal()], null,
+                            tuple.getResult(), tuple.getBelongTable(), tuple.getLine()));
+                    break;
+                case STORE:
+                    result.add(new Tuple(Operator.ASSIGN, tuple.getResult(), null,
+                            temps[tuple.getOperand2().getConstVal()], tuple.getBelongTable(), tuple.getLine()));
+                    break;
+                default:
+                    result.add(tuple);
+                    break;
+            }
+        }
+        function.setTuples(result);
+        return true;
+    }
+}
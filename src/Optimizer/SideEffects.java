@@ -0,0 +1,226 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// 函数的副作用分析(mod/ref): 每个函数读写了哪些全局变量和数组, 是否通过数组形参读写调用者的数组,
+// 是否有输入输出; 调用的效果按调用图传递给调用者, 传给被调函数的数组按实参换成调用者中的数组
+public class SideEffects {
+    private static class Summary {
+        private boolean io;
+        private boolean readsParams;
+        private boolean writesParams;
+        // 实参无法确定是哪个数组时, 视为可能读写任何全局数组和数组形参
+        private boolean unknown;
+        private final HashSet<Template> reads = new HashSet<>();
+        private final HashSet<Template> writes = new HashSet<>();
+    }
+
+    private final Program program;
+    private final HashMap<String, Summary> summaries;
+
+    public SideEffects(Program program) {
+        this.program = program;
+        this.summaries = new HashMap<>();
+        for (Function function : program.getFunctions()) {
+            Summary summary = new Summary();
+            for (Tuple tuple : function.getTuples()) {
+                addDirect(summary, tuple);
+            }
+            summaries.put(function.getName(), summary);
+        }
+        // 调用的效果传递给调用者, 直到不再变化
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Function function : program.getFunctions()) {
+                Summary summary = summaries.get(function.getName());
+                HashMap<Tuple, ArrayList<Tuple>> callArgs = function.getCallArgs();
+                for (Tuple call : callArgs.keySet()) {
+                    changed |= addCall(summary, function, call, callArgs.get(call));
+                }
+            }
+        }
+    }
+
+    private static void addDirect(Summary summary, Tuple tuple) {
+        switch (tuple.getOperator()) {
+            case PRINT, READ, EXIT:
+                summary.io = true;
+                break;
+            case STORE: {
+                Var array = Var.of(tuple, tuple.getOperand1());
+                if (array == null) {
+                    summary.unknown = true;
+                } else if (array.isGlobal()) {
+                    summary.writes.add(array.getDef());
+                } else if (array.isParam()) {
+                    summary.writesParams = true;
+                }
+                break;
+            }
+            case LOAD: {
+                Var array = Var.of(tuple, tuple.getOperand1());
+                if (array == null) {
+                    summary.unknown = true;
+                } else if (array.isGlobal()) {
+                    summary.reads.add(array.getDef());
+                } else if (array.isParam()) {
+                    summary.readsParams = true;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        Var def = DefUse.getDef(tuple);
+        if (def != null && def.isGlobal()) {
+            summary.writes.add(def.getDef());
+        }
+        for (Var var : DefUse.getUses(tuple)) {
+            if (var.isGlobal() && !var.isArray()) {
+                summary.reads.add(var.getDef());
+            }
+        }
+    }
+
+    // 传给数组形参的实参所指的数组: 由 $t = &array 或 $t = &array[i] 定义的临时变量
+    private static ArrayList<Var> arraysOf(Function function, Tuple push) {
+        ArrayList<Var> arrays = new ArrayList<>();
+        Operand arg = push.getOperand1();
+        if (arg.getType() != OperandType.TEMP) {
+            return null;
+        }
+        for (Tuple tuple : function.getTuples()) {
+            if (tuple.getResult() == null || !arg.getName().equals(tuple.getResult().getName())) {
+                continue;
+            }
+            Var array = tuple.getOperator() == Operator.LOADADDR ?
+                    Var.of(tuple, tuple.getOperand1()) : null;
+            if (array == null) {
+                return null;
+            }
+            arrays.add(array);
+        }
+        return arrays.isEmpty() ? null : arrays;
+    }
+
+    private boolean addCall(Summary summary, Function function, Tuple call, ArrayList<Tuple> pushes) {
+        String name = call.getOperand1().getName();
+        Summary callee = summaries.get(name);
+        boolean io = summary.io;
+        boolean unknown = summary.unknown;
+        boolean readsParams = summary.readsParams;
+        boolean writesParams = summary.writesParams;
+        int reads = summary.reads.size();
+        int writes = summary.writes.size();
+        if (callee == null) {
+            summary.unknown = true;
+            return !unknown;
+        }
+        summary.io |= callee.io;
+        summary.unknown |= callee.unknown;
+        summary.reads.addAll(callee.reads);
+        summary.writes.addAll(callee.writes);
+        if (callee.readsParams || callee.writesParams) {
+            Function target = program.getFunction(name);
+            ArrayList<Operand> params = target.getTemplate().getParamList();
+            for (int i = 0; i < params.size(); i++) {
+                if (target.getBodyTable().getTemplate(params.get(i).getName()).getDimCnt() == 0) {
+                    continue;
+                }
+                ArrayList<Var> arrays = arraysOf(function, pushes.get(i));
+                if (arrays == null) {
+                    summary.unknown = true;
+                    continue;
+                }
+                for (Var array : arrays) {
+                    if (array.isGlobal()) {
+                        if (callee.readsParams) {
+                            summary.reads.add(array.getDef());
+                        }
+                        if (callee.writesParams) {
+                            summary.writes.add(array.getDef());
+                        }
+                    } else if (array.isParam()) {
+                        summary.readsParams |= callee.readsParams;
+                        summary.writesParams |= callee.writesParams;
+                    }
+                }
+            }
+        }
+        return io != summary.io || unknown != summary.unknown || readsParams != summary.readsParams
+                || writesParams != summary.writesParams || reads != summary.reads.size()
+                || writes != summary.writes.size();
+    }
+
+    private Summary summaryOf(String function) {
+        Summary summary = summaries.get(function);
+        if (summary == null) {
+            summary = new Summary();
+            summary.unknown = true;
+        }
+        return summary;
+    }
+
+    // 没有调用者可见的写入和输入输出, 结果没有用到时可以删除
+    public boolean isPure(String function) {
+        Summary summary = summaryOf(function);
+        return !summary.io && !summary.unknown && !summary.writesParams && summary.writes.isEmpty();
+    }
+
+    // 纯函数且不读取全局变量和数组实参, 结果只取决于标量实参, 相同实参的调用可以合并或外提
+    public boolean isConst(String function) {
+        Summary summary = summaryOf(function);
+        return isPure(function) && !summary.readsParams && summary.reads.isEmpty();
+    }
+
+    // 调用是否可能改变全局变量或全局数组global
+    public boolean writesGlobal(String function, Template global) {
+        Summary summary = summaryOf(function);
+        return summary.unknown || summary.writes.contains(global);
+    }
+
+    // 调用是否可能读取全局变量或全局数组global
+    public boolean readsGlobal(String function, Template global) {
+        Summary summary = summaryOf(function);
+        return summary.unknown || summary.reads.contains(global);
+    }
+
+    // 调用是否可能写入传给它的数组
+    public boolean writesParams(String function) {
+        Summary summary = summaryOf(function);
+        return summary.unknown || summary.writesParams;
+    }
+
+    // 调用是否可能写入某个全局数组(数组形参可能指向它)
+    public boolean writesGlobalArray(String function) {
+        Summary summary = summaryOf(function);
+        if (summary.unknown) {
+            return true;
+        }
+        for (Template global : summary.writes) {
+            if (global.getDimCnt() != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 调用是否可能改变数组array的内容; escaped表示局部数组的地址曾传给被调函数
+    public boolean mayChange(String function, Var array, boolean escaped) {
+        if (array.isGlobal()) {
+            return writesGlobal(function, array.getDef());
+        } else if (array.isParam()) {
+            return writesParams(function) || writesGlobalArray(function);
+        }
+        return escaped && writesParams(function);
+    }
+}
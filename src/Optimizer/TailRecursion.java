@@ -0,0 +1,173 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.Operator;
+import IR.SymbolTable;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// 尾递归消除: 调用自身后直接返回其结果时, 改为给形参重新赋值并跳回函数开头, 递归变为循环
+// 实参先在PUSH的位置存入新的临时变量, 全部求值后再赋给形参;
+// 数组形参只允许原样传递, 否则形参指向的数组会在函数内改变
+public class TailRecursion extends FunctionPass {
+    @Override
+    public String getName() {
+        return "tailrec";
+    }
+
+    // 从index开始经过label与无条件跳转后到达RETURN, 且返回值就是result
+    public static boolean isTail(ArrayList<Tuple> tuples, HashMap<String, Integer> labels,
+                                 int index, Operand result) {
+        for (int steps = 0; index < tuples.size() && steps < tuples.size(); steps++) {
+            Tuple tuple = tuples.get(index);
+            switch (tuple.getOperator()) {
+                case LABEL:
+                    index++;
+                    break;
+                case GOTO:
+                    Integer target = labels.get(tuple.getOperand1().getName());
+                    if (target == null) {
+                        return false;
+                    }
+                    index = target;
+                    break;
+                case RETURN:
+                    Operand value = tuple.getOperand1();
+                    if (result == null) {
+                        return value == null;
+                    }
+                    return value != null && result.getName().equals(value.getName());
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    public static HashMap<String, Integer> labelIndex(ArrayList<Tuple> tuples) {
+        HashMap<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            if (tuples.get(i).getOperator() == Operator.LABEL) {
+                labels.put(tuples.get(i).getOperand1().getName(), i);
+            }
+        }
+        return labels;
+    }
+
+    // 实参是否为同一个数组形参本身, 即只由 $t = &param 定义的临时变量
+    private static boolean passesThrough(ArrayList<Tuple> tuples, Operand arg, Template param) {
+        if (arg.getType() != OperandType.TEMP) {
+            return false;
+        }
+        boolean found = false;
+        for (Tuple tuple : tuples) {
+            if (tuple.getResult() == null || !arg.getName().equals(tuple.getResult().getName())) {
+                continue;
+            }
+            if (tuple.getOperator() != Operator.LOADADDR || tuple.getOperand2() != null
+                    || TableTree.getInstance().getTemplate(tuple.getOperand1().getName(),
+                    tuple.getBelongTable(), tuple.getLine()) != param) {
+                return false;
+            }
+            found = true;
+        }
+        return found;
+    }
+
+    // 自身调用的实参能否直接赋给形参: 数组形参必须原样传递
+    static boolean canRebind(Function function, ArrayList<Tuple> pushes) {
+        SymbolTable bodyTable = function.getBodyTable();
+        ArrayList<Operand> params = function.getTemplate().getParamList();
+        for (int j = 0; j < params.size(); j++) {
+            Template param = bodyTable.getTemplate(params.get(j).getName());
+            if (param.getDimCnt() != 0
+                    && !passesThrough(function.getTuples(), pushes.get(j).getOperand1(), param)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // PUSH改为把实参存入新的临时变量, 返回在调用处给标量形参赋值的tuple
+    static ArrayList<Tuple> rebind(Function function, ArrayList<Tuple> pushes, Tuple call,
+                                   HashMap<Tuple, ArrayList<Tuple>> replaced) {
+        SymbolTable bodyTable = function.getBodyTable();
+        ArrayList<Operand> params = function.getTemplate().getParamList();
+        ArrayList<Tuple> assigns = new ArrayList<>();
+        for (int j = 0; j < params.size(); j++) {
+            Tuple push = pushes.get(j);
+            Operand arg = push.getOperand1();
+            if (bodyTable.getTemplate(params.get(j).getName()).getDimCnt() != 0) {
+                replaced.put(push, new ArrayList<>());
+                continue;
+            }
+            Operand value = arg;
+            ArrayList<Tuple> copy = new ArrayList<>();
+            if (arg.getType() != OperandType.CONSTVAL) {
+                value = Operand.getTempOperand();
+                copy.add(new Tuple(Operator.ASSIGN, arg, null, value,
+                        push.getBelongTable(), push.getLine()));
+            }
+            replaced.put(push, copy);
+            // 形参属于函数体符号表, 从函数体符号表查找不会被内层同名变量遮蔽
+            assigns.add(new Tuple(Operator.ASSIGN, value, null,
+                    Operand.getDefOperand(params.get(j).getName()), bodyTable, call.getLine()));
+        }
+        return assigns;
+    }
+
+    @Override
+    public boolean run(Function function) {
+        if (function.isMain()) {
+            return false;
+        }
+        ArrayList<Tuple> tuples = function.getTuples();
+        HashMap<String, Integer> labels = labelIndex(tuples);
+        HashMap<Tuple, ArrayList<Tuple>> callArgs = function.getCallArgs();
+        HashMap<Tuple, ArrayList<Tuple>> replaced = new HashMap<>();
+        Operand entry = null;
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple call = tuples.get(i);
+            if (call.getOperator() != Operator.CALL
+                    || !call.getOperand1().getName().equals(function.getName())
+                    || !isTail(tuples, labels, i + 1, call.getResult())) {
+                continue;
+            }
+            ArrayList<Tuple> pushes = callArgs.get(call);
+            if (!canRebind(function, pushes)) {
+                continue;
+            }
+            if (entry == null) {
+                entry = Operand.getAutoLabelOperand("TailEntry");
+            }
+            ArrayList<Tuple> assigns = rebind(function, pushes, call, replaced);
+            assigns.add(new Tuple(Operator.GOTO, entry, null, null,
+                    call.getBelongTable(), call.getLine()));
+            replaced.put(call, assigns);
+        }
+        if (entry == null) {
+            return false;
+        }
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (int i = 0; i < tuples.size(); i++) {
+            Tuple tuple = tuples.get(i);
+            if (replaced.containsKey(tuple)) {
+                result.addAll(replaced.get(tuple));
+            } else {
+                result.add(tuple);
+            }
+            // 跳回的位置在PUSHAR之后, 不再重新分配活动记录
+            if (i == 1) {
+                result.add(new Tuple(Operator.LABEL, entry, null, null,
+                        tuple.getBelongTable(), tuple.getLine()));
+            }
+        }
+        function.setTuples(result);
+        return true;
+    }
+}
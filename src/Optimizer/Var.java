@@ -0,0 +1,89 @@
+package Optimizer;
+
+import IR.Operand;
+import IR.OperandType;
+import IR.SymbolType;
+import IR.TableTree;
+import IR.Template;
+import IR.Tuple;
+
+import java.util.Objects;
+
+// 变量的唯一标识: 临时变量用名字区分, 具名变量用符号表中的Template区分
+public class Var {
+    private final String temp;
+    private final Template def;
+
+    private Var(String temp, Template def) {
+        this.temp = temp;
+        this.def = def;
+    }
+
+    public static Var of(Tuple tuple, Operand operand) {
+        if (operand == null) {
+            return null;
+        }
+        if (operand.getType() == OperandType.TEMP) {
+            return new Var(operand.getName(), null);
+        } else if (operand.getType() == OperandType.DEF) {
+            Template template = TableTree.getInstance().getTemplate(
+                    operand.getName(), tuple.getBelongTable(), tuple.getLine());
+            if (template == null || template.is(SymbolType.FUNC)) {
+                return null;
+            }
+            return new Var(null, template);
+        }
+        return null;
+    }
+
+    public boolean isTemp() {
+        return temp != null;
+    }
+
+    public String getTemp() {
+        return temp;
+    }
+
+    public Template getDef() {
+        return def;
+    }
+
+    public boolean isGlobal() {
+        return def != null && def.isGlobal();
+    }
+
+    public boolean isArray() {
+        return def != null && def.getDimCnt() != 0;
+    }
+
+    public boolean isParam() {
+        return def != null && def.is(SymbolType.PARAM);
+    }
+
+    // 非全局的标量: 临时变量, 局部变量和标量参数, 只会在所属函数内被访问
+    public boolean isLocalScalar() {
+        return !isGlobal() && !isArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Var)) {
+            return false;
+        }
+        Var var = (Var) o;
+        return Objects.equals(temp, var.temp) && def == var.def;
+    }
+
+    @Override
+    public int hashCode() {
+        return temp != null ? temp.hashCode() : System.identityHashCode(def);
+    }
+
+    @Override
+    public String toString() {
+        return temp != null ? temp : def.getName();
+    }
+}